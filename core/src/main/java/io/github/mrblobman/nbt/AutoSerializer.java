@@ -0,0 +1,278 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * A serializer and deserializer for plain objects built from their fields, see
+ * {@link NBTson.NBTsonBuilder#registerAuto(Class)}. The class is introspected once
+ * when the serializer is created. Each field gets a {@link MethodHandle} getter and
+ * setter typed to the field so primitives are never boxed, and a reusable
+ * {@link NBTKey} for its name.
+ * <br>
+ * Every non static, non transient field, including inherited ones, is written to a
+ * compound at the key of the field's name. Primitives, Strings and primitive arrays are
+ * written directly, other values are delegated to the {@link SerializationContext}.
+ * Null fields and missing keys are skipped so fields keep their default value. The
+ * same compound can be written straight to an {@link NBTStreamWriter}.
+ * <br>
+ * When deserializing into an existing object, fields holding an object that can itself
+ * be deserialized into are filled in rather than replaced.
+ * @param <T> the type of the objects this class serializes
+ */
+final class AutoSerializer<T> implements NBTSerializer<T>, NBTInstanceDeserializer<T>, NBTStreamSerializer<T> {
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Property[] properties;
+
+    /**
+     * @param type the class to serialize
+     * @throws IllegalArgumentException if the class does not have a no argument constructor
+     * or has fields that cannot be accessed
+     */
+    AutoSerializer(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<T> noArgs = type.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " needs an accessible no argument constructor to be serialized automatically.", e);
+        }
+
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+            fields.addAll(0, Arrays.asList(c.getDeclaredFields()));
+
+        List<Property> properties = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Field field : fields) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic())
+                continue;
+            if (!names.add(field.getName()))
+                throw new IllegalArgumentException(type.getSimpleName() + " has more than one field named " + field.getName() + ".");
+            try {
+                field.setAccessible(true);
+                properties.add(new Property(field, lookup.unreflectGetter(field), lookup.unreflectSetter(field)));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot access the field " + field.getName() + " of " + type.getSimpleName() + ".", e);
+            }
+        }
+        this.properties = properties.toArray(new Property[properties.size()]);
+    }
+
+    @Override
+    public NBTBaseTag serialize(T item, SerializationContext context) {
+        NBTCompoundTag tag = context.factory().newCompoundTag();
+        try {
+            for (Property property : properties)
+                property.write(item, tag, context);
+        } catch (NBTException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new NBTSerializationException("Exception encountered while serializing a " + type.getSimpleName() + ".", t);
+        }
+        return tag;
+    }
+
+    @Override
+    public void serialize(T item, NBTStreamWriter out, SerializationContext context) {
+        out.beginCompound();
+        try {
+            for (Property property : properties)
+                property.write(item, out, context);
+        } catch (NBTException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new NBTSerializationException("Exception encountered while serializing a " + type.getSimpleName() + ".", t);
+        }
+        out.endCompound();
+    }
+
+    @Override
+    public T deserialize(NBTBaseTag tag, SerializationContext context) {
+        checkCompound(tag);
+        Object item;
+        try {
+            item = constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new NBTDeserializationException(tag, "Exception encountered while creating a " + type.getSimpleName() + ".", t);
+        }
+        deserializeInto(tag, type.cast(item), context);
+        return type.cast(item);
+    }
+
+    @Override
+    public void deserializeInto(NBTBaseTag tag, T target, SerializationContext context) {
+        checkCompound(tag);
+        NBTCompoundTag compound = (NBTCompoundTag) tag;
+        try {
+            for (Property property : properties) {
+                if (compound.hasKey(property.key))
+                    property.read(target, compound, context);
+            }
+        } catch (NBTException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new NBTDeserializationException(tag, "Exception encountered while deserializing a " + type.getSimpleName() + ".", t);
+        }
+    }
+
+    private void checkCompound(NBTBaseTag tag) {
+        if (!tag.type().isCompound())
+            throw new NBTDeserializationException(tag, "Expected a compound for a " + type.getSimpleName() + " but found a " + tag.type() + ".");
+    }
+
+    /**
+     * A field and its typed accessors. The handles are adapted to take the
+     * owner as an Object so that they can be invoked exactly.
+     */
+    private static final class Property {
+        final NBTKey key;
+        final Class<?> fieldType;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        Property(Field field, MethodHandle getter, MethodHandle setter) {
+            this.key = NBTKey.of(field.getName());
+            Class<?> type = field.getType();
+            this.fieldType = type;
+            Class<?> erased = type.isPrimitive() ? type : Object.class;
+            this.getter = getter.asType(MethodType.methodType(erased, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, erased));
+        }
+
+        void write(Object item, NBTCompoundTag tag, SerializationContext context) throws Throwable {
+            if (fieldType == int.class) {
+                tag.putInt(key, (int) getter.invokeExact(item));
+            } else if (fieldType == double.class) {
+                tag.putDouble(key, (double) getter.invokeExact(item));
+            } else if (fieldType == boolean.class) {
+                tag.putBoolean(key, (boolean) getter.invokeExact(item));
+            } else if (fieldType == long.class) {
+                tag.putLong(key, (long) getter.invokeExact(item));
+            } else if (fieldType == float.class) {
+                tag.putFloat(key, (float) getter.invokeExact(item));
+            } else if (fieldType == byte.class) {
+                tag.putByte(key, (byte) getter.invokeExact(item));
+            } else if (fieldType == short.class) {
+                tag.putShort(key, (short) getter.invokeExact(item));
+            } else if (fieldType == char.class) {
+                tag.putShort(key, (short) (char) getter.invokeExact(item));
+            } else {
+                Object value = (Object) getter.invokeExact(item);
+                if (value == null)
+                    return;
+                if (value instanceof String)
+                    tag.putString(key, (String) value);
+                else if (value instanceof byte[])
+                    tag.putByteArray(key, (byte[]) value);
+                else if (value instanceof int[])
+                    tag.putIntArray(key, (int[]) value);
+                else if (value instanceof long[])
+                    tag.put(key, DefaultSerializers.longs((long[]) value, context));
+                else
+                    tag.put(key, context.serialize(value));
+            }
+        }
+
+        void write(Object item, NBTStreamWriter out, SerializationContext context) throws Throwable {
+            if (fieldType == int.class) {
+                out.name(key).value((int) getter.invokeExact(item));
+            } else if (fieldType == double.class) {
+                out.name(key).value((double) getter.invokeExact(item));
+            } else if (fieldType == boolean.class) {
+                out.name(key).value((boolean) getter.invokeExact(item));
+            } else if (fieldType == long.class) {
+                out.name(key).value((long) getter.invokeExact(item));
+            } else if (fieldType == float.class) {
+                out.name(key).value((float) getter.invokeExact(item));
+            } else if (fieldType == byte.class) {
+                out.name(key).value((byte) getter.invokeExact(item));
+            } else if (fieldType == short.class) {
+                out.name(key).value((short) getter.invokeExact(item));
+            } else if (fieldType == char.class) {
+                out.name(key).value((short) (char) getter.invokeExact(item));
+            } else {
+                Object value = (Object) getter.invokeExact(item);
+                if (value == null)
+                    return;
+                out.name(key);
+                if (value instanceof String)
+                    out.value((String) value);
+                else if (value instanceof byte[])
+                    out.value((byte[]) value);
+                else if (value instanceof int[])
+                    out.value((int[]) value);
+                else if (value instanceof long[])
+                    DefaultSerializers.writeLongs((long[]) value, out, context);
+                else
+                    context.serialize(value, out);
+            }
+        }
+
+        void read(Object item, NBTCompoundTag tag, SerializationContext context) throws Throwable {
+            if (fieldType == int.class) {
+                setter.invokeExact(item, tag.getInt(key));
+            } else if (fieldType == double.class) {
+                setter.invokeExact(item, tag.getDouble(key));
+            } else if (fieldType == boolean.class) {
+                setter.invokeExact(item, tag.getBoolean(key));
+            } else if (fieldType == long.class) {
+                setter.invokeExact(item, tag.getLong(key));
+            } else if (fieldType == float.class) {
+                setter.invokeExact(item, tag.getFloat(key));
+            } else if (fieldType == byte.class) {
+                setter.invokeExact(item, tag.getByte(key));
+            } else if (fieldType == short.class) {
+                setter.invokeExact(item, tag.getShort(key));
+            } else if (fieldType == char.class) {
+                setter.invokeExact(item, (char) tag.getShort(key));
+            } else {
+                Object value;
+                if (fieldType == String.class)
+                    value = tag.getString(key);
+                //The arrays of live tags are the nms storage, the fields get copies
+                else if (fieldType == byte[].class)
+                    value = tag.getByteArray(key).clone();
+                else if (fieldType == int[].class)
+                    value = tag.getIntArray(key).clone();
+                else if (fieldType == long[].class)
+                    value = DefaultSerializers.readLongs(tag.getTag(key));
+                else
+                    value = context.deserializeInto(tag.getTag(key), (Object) getter.invokeExact(item), (Class) fieldType);
+                setter.invokeExact(item, value);
+            }
+        }
+    }
+}
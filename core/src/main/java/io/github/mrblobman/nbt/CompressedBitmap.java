@@ -0,0 +1,710 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A CompressedBitmap is a set of ints stored in a roaring bitmap style layout
+ * that can be written to and read from a byte[] or int[] tag. It is designed
+ * for storing large, sparse sets (such as packed block positions) compactly.
+ * <br>
+ * The set is split into chunks of 2<sup>16</sup> values keyed by the upper 16 bits
+ * of each value. Each chunk stores its lower 16 bits either in a sorted {@code char[]}
+ * when it holds at most 4096 values or in a 8 KiB bitmap when it holds more. This
+ * keeps {@link #contains(int)} and {@link #add(int)} to a binary search over the
+ * chunk keys plus a binary search or a single bit test within the chunk.
+ * <br>
+ * Values are iterated in unsigned order, {@code 0} to {@code 0x7FFFFFFF} and then
+ * {@code 0x80000000} to {@code 0xFFFFFFFF}.
+ */
+public final class CompressedBitmap {
+    private static final int SERIAL_COOKIE = 0x4E42424D;
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Create a new, empty bitmap.
+     */
+    public CompressedBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+        this.size = 0;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Add a value to this set.
+     * @param value the value to add
+     * @return true if the value was not already in the set, false otherwise
+     */
+    public boolean add(int value) {
+        char key = (char) (value >>> 16);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+
+        Container container = containers[index];
+        int oldCardinality = container.cardinality();
+        containers[index] = container.add((char) value);
+        return containers[index].cardinality() != oldCardinality;
+    }
+
+    /**
+     * Remove a value from this set.
+     * @param value the value to remove
+     * @return true if the value was in the set, false otherwise
+     */
+    public boolean remove(int value) {
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0)
+            return false;
+
+        Container container = containers[index];
+        int oldCardinality = container.cardinality();
+        container = container.remove((char) value);
+        if (container.cardinality() == 0)
+            removeContainer(index);
+        else
+            containers[index] = container;
+        return container.cardinality() != oldCardinality;
+    }
+
+    /**
+     * Check if a value is in this set.
+     * @param value the value to look for
+     * @return true if the value is in the set, false otherwise
+     */
+    public boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * @return the number of values in this set
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++)
+            cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    /**
+     * @return true if there are no values in this set, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add all of the values in {@code other} to this set. The {@code other}
+     * bitmap is not modified.
+     * @param other the set to union with this set
+     */
+    public void or(CompressedBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            char key = other.keys[j];
+            int index = indexOf(key);
+            if (index < 0)
+                insertContainer(-index - 1, key, other.containers[j].copy());
+            else
+                containers[index] = containers[index].or(other.containers[j]);
+        }
+    }
+
+    /**
+     * Compute the union of 2 sets without modifying either of them.
+     * @param a the first set
+     * @param b the second set
+     * @return a new set containing every value in {@code a} or {@code b}
+     */
+    public static CompressedBitmap union(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = a.copy();
+        result.or(b);
+        return result;
+    }
+
+    /**
+     * @return a deep copy of this set
+     */
+    public CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size, 4));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++)
+            copy.containers[i] = containers[i].copy();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Iterate over the values in this set without expanding it. The set must
+     * not be modified during the iteration.
+     * @return an iterator over the values in unsigned order
+     */
+    public IntIterator iterator() {
+        return new BitmapIterator();
+    }
+
+    private int serializedSize() {
+        int bytes = 8;
+        for (int i = 0; i < size; i++)
+            bytes += 4 + containers[i].serializedSize();
+        return bytes;
+    }
+
+    private void write(ByteBuffer out) {
+        out.putInt(SERIAL_COOKIE);
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putChar(keys[i]);
+            out.putChar((char) (containers[i].cardinality() - 1));
+            containers[i].write(out);
+        }
+    }
+
+    /**
+     * Serialize this set. See {@link #fromByteArray(byte[])} for the inverse.
+     * @return the serialized form of this set
+     */
+    public byte[] toByteArray() {
+        ByteBuffer out = ByteBuffer.allocate(serializedSize());
+        write(out);
+        return out.array();
+    }
+
+    /**
+     * Serialize this set into an int[]. The bytes from {@link #toByteArray()} are
+     * packed big endian into the ints and padded with zeros. See
+     * {@link #fromIntArray(int[])} for the inverse.
+     * @return the serialized form of this set
+     */
+    public int[] toIntArray() {
+        int bytes = serializedSize();
+        ByteBuffer out = ByteBuffer.allocate((bytes + 3) & ~3);
+        write(out);
+        int[] ints = new int[out.capacity() / 4];
+        out.clear();
+        out.asIntBuffer().get(ints);
+        return ints;
+    }
+
+    /**
+     * @return a new byte[] tag containing the serialized form of this set
+     */
+    public NBTBaseTag<byte[]> toByteArrayTag() {
+        return TagFactory.get().newByteArrayTag(toByteArray());
+    }
+
+    /**
+     * @return a new int[] tag containing the serialized form of this set
+     */
+    public NBTBaseTag<int[]> toIntArrayTag() {
+        return TagFactory.get().newIntArrayTag(toIntArray());
+    }
+
+    /**
+     * Deserialize a set written with {@link #toByteArray()}.
+     * @param data the serialized set
+     * @return the deserialized set
+     * @throws IllegalArgumentException if the data is not a valid serialized set
+     */
+    public static CompressedBitmap fromByteArray(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Deserialize a set written with {@link #toIntArray()}.
+     * @param data the serialized set
+     * @return the deserialized set
+     * @throws IllegalArgumentException if the data is not a valid serialized set
+     */
+    public static CompressedBitmap fromIntArray(int[] data) {
+        ByteBuffer in = ByteBuffer.allocate(data.length * 4);
+        in.asIntBuffer().put(data);
+        return read(in);
+    }
+
+    /**
+     * Deserialize a set from a byte[] or int[] tag written with {@link #toByteArrayTag()}
+     * or {@link #toIntArrayTag()}. Byte array tags are read through their
+     * {@link NBTByteArrayTag#view() view} without copying the data.
+     * @param tag the tag containing the serialized set
+     * @return the deserialized set
+     * @throws NBTDeserializationException if the tag is not an array tag or does
+     * not contain a valid serialized set.
+     */
+    public static CompressedBitmap fromTag(NBTBaseTag tag) {
+        try {
+            if (tag instanceof NBTByteArrayTag)
+                return read(((NBTByteArrayTag) tag).view());
+            if (tag.type().isByteArray())
+                return fromByteArray((byte[]) tag.get());
+            if (tag.type().isIntArray())
+                return fromIntArray((int[]) tag.get());
+        } catch (IllegalArgumentException e) {
+            throw new NBTDeserializationException(tag, "Malformed bitmap", e);
+        }
+        throw new NBTDeserializationException(tag, "A bitmap can only be read from a byte[] or int[] tag.");
+    }
+
+    private static CompressedBitmap read(ByteBuffer in) {
+        try {
+            if (in.getInt() != SERIAL_COOKIE)
+                throw new IllegalArgumentException("Data is not a serialized bitmap.");
+            int size = in.getInt();
+            if (size < 0 || size > 1 << 16)
+                throw new IllegalArgumentException("Invalid chunk count " + size);
+
+            CompressedBitmap bitmap = new CompressedBitmap();
+            bitmap.keys = new char[Math.max(size, 4)];
+            bitmap.containers = new Container[bitmap.keys.length];
+            for (int i = 0; i < size; i++) {
+                char key = in.getChar();
+                if (i > 0 && key <= bitmap.keys[i - 1])
+                    throw new IllegalArgumentException("Chunk keys are not sorted.");
+                int cardinality = in.getChar() + 1;
+                bitmap.keys[i] = key;
+                bitmap.containers[i] = cardinality > ARRAY_MAX_SIZE
+                        ? BitmapContainer.read(in, cardinality)
+                        : ArrayContainer.read(in, cardinality);
+                bitmap.size++;
+            }
+            return bitmap;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Serialized bitmap is truncated.", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof CompressedBitmap)) return false;
+        CompressedBitmap other = (CompressedBitmap) obj;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].equals(other.containers[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+            hash = 31 * (31 * hash + keys[i]) + containers[i].hashCode();
+        return hash;
+    }
+
+    /**
+     * An iterator over primitive ints that doesn't box each value.
+     */
+    public interface IntIterator {
+        /**
+         * @return true if there are more values to iterate over
+         */
+        boolean hasNext();
+
+        /**
+         * @return the next value
+         * @throws NoSuchElementException if there are no more values
+         */
+        int next();
+    }
+
+    private class BitmapIterator implements IntIterator {
+        private int index = 0;
+        private int high;
+        private CharIterator current = size > 0 ? start(0) : null;
+
+        private CharIterator start(int i) {
+            high = keys[i] << 16;
+            return containers[i].iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null && current.hasNext();
+        }
+
+        @Override
+        public int next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int value = high | current.next();
+            if (!current.hasNext())
+                current = ++index < size ? start(index) : null;
+            return value;
+        }
+    }
+
+    private interface CharIterator {
+        boolean hasNext();
+
+        char next();
+    }
+
+    private static abstract class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract CharIterator iterator();
+
+        abstract int serializedSize();
+
+        abstract void write(ByteBuffer out);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        static ArrayContainer read(ByteBuffer in, int cardinality) {
+            char[] values = new char[cardinality];
+            in.asCharBuffer().get(values);
+            in.position(in.position() + cardinality * 2);
+            for (int i = 1; i < cardinality; i++) {
+                if (values[i] <= values[i - 1])
+                    throw new IllegalArgumentException("Chunk values are not sorted.");
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0)
+                return this;
+            if (cardinality == ARRAY_MAX_SIZE)
+                return toBitmap().add(value);
+
+            index = -index - 1;
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX_SIZE));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer)
+                return other.copy().or(this);
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[cardinality + array.cardinality];
+            int i = 0, j = 0, k = 0;
+            while (i < cardinality && j < array.cardinality) {
+                char a = values[i], b = array.values[j];
+                if (a < b) {
+                    merged[k++] = a;
+                    i++;
+                } else if (a > b) {
+                    merged[k++] = b;
+                    j++;
+                } else {
+                    merged[k++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < cardinality) merged[k++] = values[i++];
+            while (j < array.cardinality) merged[k++] = array.values[j++];
+
+            ArrayContainer result = new ArrayContainer(merged, k);
+            return k > ARRAY_MAX_SIZE ? result.toBitmap() : result;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++)
+                bitmap.set(values[i]);
+            return bitmap;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+        }
+
+        @Override
+        CharIterator iterator() {
+            return new CharIterator() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < cardinality;
+                }
+
+                @Override
+                public char next() {
+                    return values[index++];
+                }
+            };
+        }
+
+        @Override
+        int serializedSize() {
+            return cardinality * 2;
+        }
+
+        @Override
+        void write(ByteBuffer out) {
+            for (int i = 0; i < cardinality; i++)
+                out.putChar(values[i]);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ArrayContainer)) return false;
+            ArrayContainer other = (ArrayContainer) obj;
+            if (cardinality != other.cardinality) return false;
+            for (int i = 0; i < cardinality; i++) {
+                if (values[i] != other.values[i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < cardinality; i++)
+                hash = 31 * hash + values[i];
+            return hash;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer read(ByteBuffer in, int cardinality) {
+            long[] words = new long[BITMAP_WORDS];
+            in.asLongBuffer().get(words);
+            in.position(in.position() + BITMAP_WORDS * 8);
+            int count = 0;
+            for (long word : words)
+                count += Long.bitCount(word);
+            if (count != cardinality)
+                throw new IllegalArgumentException("Chunk cardinality " + cardinality + " doesn't match its content " + count);
+            return new BitmapContainer(words, cardinality);
+        }
+
+        void set(char value) {
+            long bit = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & bit) == 0) {
+                words[index] |= bit;
+                cardinality++;
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & bit) != 0) {
+                words[index] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX_SIZE)
+                    return toArray();
+            }
+            return this;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int k = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[k++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, k);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++)
+                    set(array.values[i]);
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    words[i] |= otherWords[i];
+                    count += Long.bitCount(words[i]);
+                }
+                cardinality = count;
+            }
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+        }
+
+        @Override
+        CharIterator iterator() {
+            return new CharIterator() {
+                private int index = 0;
+                private long word = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0 && index + 1 < BITMAP_WORDS)
+                        word = words[++index];
+                    return word != 0;
+                }
+
+                @Override
+                public char next() {
+                    hasNext();
+                    char value = (char) ((index << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        int serializedSize() {
+            return BITMAP_WORDS * 8;
+        }
+
+        @Override
+        void write(ByteBuffer out) {
+            for (long word : words)
+                out.putLong(word);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof BitmapContainer && Arrays.equals(words, ((BitmapContainer) obj).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(words);
+        }
+    }
+}
@@ -0,0 +1,704 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.*;
+
+/**
+ * The serializers and deserializers that every {@link NBTson.NBTsonBuilder} starts with.
+ * Each type is written in the cheapest representation that NBT has for it:
+ * <ul>
+ *     <li>Boxed primitives are written as the matching number tag, booleans as a byte
+ *     and characters as a short.</li>
+ *     <li>{@code byte[]}, {@code boolean[]}, {@code int[]} and {@code long[]} are written
+ *     as array tags and {@code double[]} as a list of doubles, all without boxing.</li>
+ *     <li>Lists of Integers, Bytes and Longs are unboxed into the matching array tag.
+ *     Other collections become a list tag of their serialized elements.</li>
+ *     <li>A {@code Map<String, V>} becomes a compound of its serialized values.</li>
+ *     <li>A UUID is written as an int array of 4 ints.</li>
+ *     <li>Enums are written by name, see {@link NBTson.NBTsonBuilder#registerEnumByOrdinal(Class)}
+ *     for the smaller ordinal form. Both forms are accepted when reading.</li>
+ * </ul>
+ * All of them can also be written straight to an {@link NBTStreamWriter} in the same form.
+ * <br>
+ * Collections and maps are read back into an {@code ArrayList}, {@code LinkedHashSet}
+ * or {@code LinkedHashMap} with the natural value of each tag, see {@link #toJava(NBTBaseTag)},
+ * as the element type is erased.
+ */
+final class DefaultSerializers {
+    private static final ClassValue<EnumCodec> ENUM_CODECS = new ClassValue<EnumCodec>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected EnumCodec computeValue(Class<?> type) {
+            return new EnumCodec(type.asSubclass(Enum.class), false);
+        }
+    };
+
+    private static final NBTStreamSerializer<Object> STREAM_SERIALIZER = new BuiltInStreamSerializer();
+    private static volatile Boolean longArrays;
+
+    private DefaultSerializers() {}
+
+    static void registerAll(NBTson.NBTsonBuilder builder) {
+        builder.register(Byte.class, new NBTSerializer<Byte>() {
+            @Override
+            public NBTBaseTag serialize(Byte item, SerializationContext context) {
+                return context.factory().newByteTag(item);
+            }
+        }, new NBTDeserializer<Byte>() {
+            @Override
+            public Byte deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Byte").getByte();
+            }
+        });
+        builder.register(Short.class, new NBTSerializer<Short>() {
+            @Override
+            public NBTBaseTag serialize(Short item, SerializationContext context) {
+                return context.factory().newShortTag(item);
+            }
+        }, new NBTDeserializer<Short>() {
+            @Override
+            public Short deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Short").getShort();
+            }
+        });
+        builder.register(Integer.class, new NBTSerializer<Integer>() {
+            @Override
+            public NBTBaseTag serialize(Integer item, SerializationContext context) {
+                return context.factory().newIntTag(item);
+            }
+        }, new NBTDeserializer<Integer>() {
+            @Override
+            public Integer deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Integer").getInt();
+            }
+        });
+        builder.register(Long.class, new NBTSerializer<Long>() {
+            @Override
+            public NBTBaseTag serialize(Long item, SerializationContext context) {
+                return context.factory().newLongTag(item);
+            }
+        }, new NBTDeserializer<Long>() {
+            @Override
+            public Long deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Long").getLong();
+            }
+        });
+        builder.register(Float.class, new NBTSerializer<Float>() {
+            @Override
+            public NBTBaseTag serialize(Float item, SerializationContext context) {
+                return context.factory().newFloatTag(item);
+            }
+        }, new NBTDeserializer<Float>() {
+            @Override
+            public Float deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Float").getFloat();
+            }
+        });
+        builder.register(Double.class, new NBTSerializer<Double>() {
+            @Override
+            public NBTBaseTag serialize(Double item, SerializationContext context) {
+                return context.factory().newDoubleTag(item);
+            }
+        }, new NBTDeserializer<Double>() {
+            @Override
+            public Double deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Double").getDouble();
+            }
+        });
+        builder.register(Boolean.class, new NBTSerializer<Boolean>() {
+            @Override
+            public NBTBaseTag serialize(Boolean item, SerializationContext context) {
+                return context.factory().newByteTag(item ? (byte) 1 : (byte) 0);
+            }
+        }, new NBTDeserializer<Boolean>() {
+            @Override
+            public Boolean deserialize(NBTBaseTag tag, SerializationContext context) {
+                return number(tag, "Boolean").getByte() != 0;
+            }
+        });
+        builder.register(Character.class, new NBTSerializer<Character>() {
+            @Override
+            public NBTBaseTag serialize(Character item, SerializationContext context) {
+                return context.factory().newShortTag((short) item.charValue());
+            }
+        }, new NBTDeserializer<Character>() {
+            @Override
+            public Character deserialize(NBTBaseTag tag, SerializationContext context) {
+                return (char) number(tag, "Character").getShort();
+            }
+        });
+        builder.register(String.class, new NBTSerializer<String>() {
+            @Override
+            public NBTBaseTag serialize(String item, SerializationContext context) {
+                return context.factory().newStringTag(item);
+            }
+        }, new NBTDeserializer<String>() {
+            @Override
+            public String deserialize(NBTBaseTag tag, SerializationContext context) {
+                return (String) expect(tag, NBTType.STRING, "String").get();
+            }
+        });
+        builder.register(UUID.class, new NBTSerializer<UUID>() {
+            @Override
+            public NBTBaseTag serialize(UUID item, SerializationContext context) {
+                long most = item.getMostSignificantBits();
+                long least = item.getLeastSignificantBits();
+                return context.factory().newIntArrayTag(new int[] {
+                        (int) (most >> 32), (int) most, (int) (least >> 32), (int) least
+                });
+            }
+        }, new NBTDeserializer<UUID>() {
+            @Override
+            public UUID deserialize(NBTBaseTag tag, SerializationContext context) {
+                //Also accept the 2 longs written by NBTCompoundTag#putUUID and the string form
+                if (tag.type().isCompound()) {
+                    NBTCompoundTag compound = (NBTCompoundTag) tag;
+                    return new UUID(compound.getLong("Most"), compound.getLong("Least"));
+                }
+                if (tag.type().isString())
+                    return UUID.fromString((String) tag.get());
+                int[] ints = (int[]) expect(tag, NBTType.INT_ARRAY, "UUID").get();
+                if (ints.length != 4)
+                    throw new NBTDeserializationException(tag, "Expected 4 ints for a UUID but found " + ints.length + ".");
+                return new UUID(((long) ints[0] << 32) | (ints[1] & 0xFFFFFFFFL), ((long) ints[2] << 32) | (ints[3] & 0xFFFFFFFFL));
+            }
+        });
+
+        builder.register(byte[].class, new NBTSerializer<byte[]>() {
+            @Override
+            public NBTBaseTag serialize(byte[] item, SerializationContext context) {
+                return context.factory().newByteArrayTag(item);
+            }
+        }, new NBTDeserializer<byte[]>() {
+            @Override
+            public byte[] deserialize(NBTBaseTag tag, SerializationContext context) {
+                //Copy, the array of the tag is the live nms array
+                return ((NBTByteArrayTag) expect(tag, NBTType.BYTE_ARRAY, "byte[]")).copy();
+            }
+        });
+        builder.register(boolean[].class, new NBTSerializer<boolean[]>() {
+            @Override
+            public NBTBaseTag serialize(boolean[] item, SerializationContext context) {
+                byte[] bytes = new byte[item.length];
+                for (int i = 0; i < item.length; i++)
+                    bytes[i] = item[i] ? (byte) 1 : (byte) 0;
+                return context.factory().newByteArrayTag(bytes);
+            }
+        }, new NBTDeserializer<boolean[]>() {
+            @Override
+            public boolean[] deserialize(NBTBaseTag tag, SerializationContext context) {
+                byte[] bytes = (byte[]) expect(tag, NBTType.BYTE_ARRAY, "boolean[]").get();
+                boolean[] values = new boolean[bytes.length];
+                for (int i = 0; i < bytes.length; i++)
+                    values[i] = bytes[i] != 0;
+                return values;
+            }
+        });
+        builder.register(int[].class, new NBTSerializer<int[]>() {
+            @Override
+            public NBTBaseTag serialize(int[] item, SerializationContext context) {
+                return context.factory().newIntArrayTag(item);
+            }
+        }, new NBTDeserializer<int[]>() {
+            @Override
+            public int[] deserialize(NBTBaseTag tag, SerializationContext context) {
+                if (tag.type().isList())
+                    return ((NBTListTag) tag).asIntArray();
+                return ((NBTIntArrayTag) expect(tag, NBTType.INT_ARRAY, "int[]")).copy();
+            }
+        });
+        builder.register(long[].class, new NBTSerializer<long[]>() {
+            @Override
+            public NBTBaseTag serialize(long[] item, SerializationContext context) {
+                return longs(item, context);
+            }
+        }, new NBTDeserializer<long[]>() {
+            @Override
+            public long[] deserialize(NBTBaseTag tag, SerializationContext context) {
+                return readLongs(tag);
+            }
+        });
+        builder.register(double[].class, new NBTSerializer<double[]>() {
+            @Override
+            public NBTBaseTag serialize(double[] item, SerializationContext context) {
+                NBTListTag list = context.factory().newListTag();
+                list.addAll(item);
+                return list;
+            }
+        }, new NBTDeserializer<double[]>() {
+            @Override
+            public double[] deserialize(NBTBaseTag tag, SerializationContext context) {
+                return ((NBTListTag) expect(tag, NBTType.LIST, "double[]")).asDoubleArray();
+            }
+        });
+
+        //Collections and maps are resolved through the hierarchy when serializing
+        //but deserializers are looked up by the exact class that is requested
+        builder.registerSerializer(Collection.class, new NBTSerializer<Collection>() {
+            @Override
+            public NBTBaseTag serialize(Collection item, SerializationContext context) {
+                return collection(item, context);
+            }
+        });
+        NBTDeserializer<List> list = new NBTDeserializer<List>() {
+            @Override
+            public List deserialize(NBTBaseTag tag, SerializationContext context) {
+                return toList(tag);
+            }
+        };
+        builder.registerDeserializer(Collection.class, (NBTDeserializer) list);
+        builder.registerDeserializer(List.class, list);
+        builder.registerDeserializer(ArrayList.class, (NBTDeserializer) list);
+        NBTDeserializer<Set> set = new NBTDeserializer<Set>() {
+            @Override
+            public Set deserialize(NBTBaseTag tag, SerializationContext context) {
+                return new LinkedHashSet(toList(tag));
+            }
+        };
+        builder.registerDeserializer(Set.class, set);
+        builder.registerDeserializer(LinkedHashSet.class, (NBTDeserializer) set);
+
+        builder.registerSerializer(Map.class, new NBTSerializer<Map>() {
+            @Override
+            public NBTBaseTag serialize(Map item, SerializationContext context) {
+                NBTCompoundTag compound = context.factory().newCompoundTag();
+                for (Object o : item.entrySet()) {
+                    Map.Entry entry = (Map.Entry) o;
+                    if (!(entry.getKey() instanceof String))
+                        throw new NBTSerializationException("Only maps with String keys can be serialized but found the key " + entry.getKey() + ".");
+                    if (entry.getValue() != null)
+                        compound.put((String) entry.getKey(), context.serialize(entry.getValue()));
+                }
+                return compound;
+            }
+        });
+        NBTDeserializer<Map> map = new NBTDeserializer<Map>() {
+            @Override
+            public Map deserialize(NBTBaseTag tag, SerializationContext context) {
+                return toMap((NBTCompoundTag) expect(tag, NBTType.COMPOUND, "Map"));
+            }
+        };
+        builder.registerDeserializer(Map.class, map);
+        builder.registerDeserializer(HashMap.class, (NBTDeserializer) map);
+        builder.registerDeserializer(LinkedHashMap.class, (NBTDeserializer) map);
+
+        builder.registerSerializer(Enum.class, new NBTSerializer<Enum>() {
+            @Override
+            public NBTBaseTag serialize(Enum item, SerializationContext context) {
+                return context.factory().newStringTag(item.name());
+            }
+        });
+        builder.registerDeserializer(Object.class, new NBTDeserializer<Object>() {
+            @Override
+            public Object deserialize(NBTBaseTag tag, SerializationContext context) {
+                return toJava(tag);
+            }
+        });
+
+        Class[] streamed = {
+                Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Boolean.class,
+                Character.class, String.class, UUID.class, byte[].class, boolean[].class, int[].class,
+                long[].class, double[].class, Collection.class, Map.class, Enum.class
+        };
+        for (Class type : streamed)
+            builder.registerStreamSerializer(type, STREAM_SERIALIZER);
+    }
+
+    /**
+     * Write one of the built in types to the stream in the same form as its tag serializer.
+     */
+    private static void write(Object item, NBTStreamWriter out, SerializationContext context) {
+        if (item instanceof Integer) {
+            out.value((int) (Integer) item);
+        } else if (item instanceof String) {
+            out.value((String) item);
+        } else if (item instanceof Double) {
+            out.value((double) (Double) item);
+        } else if (item instanceof Long) {
+            out.value((long) (Long) item);
+        } else if (item instanceof Boolean) {
+            out.value((boolean) (Boolean) item);
+        } else if (item instanceof Float) {
+            out.value((float) (Float) item);
+        } else if (item instanceof Byte) {
+            out.value((byte) (Byte) item);
+        } else if (item instanceof Short) {
+            out.value((short) (Short) item);
+        } else if (item instanceof Character) {
+            out.value((short) (char) (Character) item);
+        } else if (item instanceof Enum) {
+            out.value(((Enum) item).name());
+        } else if (item instanceof UUID) {
+            UUID id = (UUID) item;
+            long most = id.getMostSignificantBits();
+            long least = id.getLeastSignificantBits();
+            out.value(new int[] { (int) (most >> 32), (int) most, (int) (least >> 32), (int) least });
+        } else if (item instanceof byte[]) {
+            out.value((byte[]) item);
+        } else if (item instanceof int[]) {
+            out.value((int[]) item);
+        } else if (item instanceof long[]) {
+            writeLongs((long[]) item, out, context);
+        } else if (item instanceof double[]) {
+            double[] values = (double[]) item;
+            out.beginList(values.length);
+            for (double value : values)
+                out.value(value);
+            out.endList();
+        } else if (item instanceof boolean[]) {
+            boolean[] values = (boolean[]) item;
+            byte[] bytes = new byte[values.length];
+            for (int i = 0; i < values.length; i++)
+                bytes[i] = values[i] ? (byte) 1 : (byte) 0;
+            out.value(bytes);
+        } else if (item instanceof Collection) {
+            writeCollection((Collection<?>) item, out, context);
+        } else {
+            out.beginCompound();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) item).entrySet()) {
+                if (!(entry.getKey() instanceof String))
+                    throw new NBTSerializationException("Only maps with String keys can be serialized but found the key " + entry.getKey() + ".");
+                if (entry.getValue() != null)
+                    context.serialize(entry.getValue(), out.name((String) entry.getKey()));
+            }
+            out.endCompound();
+        }
+    }
+
+    private static void writeCollection(Collection<?> items, NBTStreamWriter out, SerializationContext context) {
+        Class<?> common = commonClass(items);
+        if (common == Integer.class) {
+            int[] values = new int[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Integer) item;
+            out.value(values);
+        } else if (common == Byte.class) {
+            byte[] values = new byte[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Byte) item;
+            out.value(values);
+        } else if (common == Long.class) {
+            long[] values = new long[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Long) item;
+            writeLongs(values, out, context);
+        } else {
+            out.beginList(items.size());
+            for (Object item : items) {
+                if (item == null)
+                    throw new NBTSerializationException("Cannot serialize a collection containing null.");
+                context.serialize(item, out);
+            }
+            out.endList();
+        }
+    }
+
+    /**
+     * Stream the same tag as {@link #longs(long[], SerializationContext)}.
+     */
+    static void writeLongs(long[] values, NBTStreamWriter out, SerializationContext context) {
+        if (longArrays(context)) {
+            out.value(values);
+        } else {
+            out.beginList(values.length);
+            for (long value : values)
+                out.value(value);
+            out.endList();
+        }
+    }
+
+    /**
+     * Get the codec that reads enums of the given type from their name or ordinal.
+     * @param type the enum class
+     * @return the cached codec for the type
+     */
+    @SuppressWarnings("unchecked")
+    static <T> NBTDeserializer<T> enumCodec(Class<T> type) {
+        return ENUM_CODECS.get(type);
+    }
+
+    /**
+     * Convert a tag to its natural Java value. Number tags become their boxed
+     * value, strings and arrays are returned as is, lists become an {@code ArrayList}
+     * and compounds a {@code LinkedHashMap} of converted values.
+     * @param tag the tag to convert
+     * @return the value of the tag
+     */
+    static Object toJava(NBTBaseTag tag) {
+        if (tag.type().isList())
+            return toList(tag);
+        if (tag.type().isCompound())
+            return toMap((NBTCompoundTag) tag);
+        switch (tag.type().ID) {
+            case 7:
+                return ((NBTByteArrayTag) tag).copy();
+            case 11:
+                return ((NBTIntArrayTag) tag).copy();
+            case 12:
+                return ((NBTLongArrayTag) tag).copy();
+            default:
+                return tag.get();
+        }
+    }
+
+    private static List<Object> toList(NBTBaseTag tag) {
+        switch (tag.type().ID) {
+            case 7: {
+                byte[] values = (byte[]) tag.get();
+                List<Object> list = new ArrayList<>(values.length);
+                for (byte value : values)
+                    list.add(value);
+                return list;
+            }
+            case 11: {
+                int[] values = (int[]) tag.get();
+                List<Object> list = new ArrayList<>(values.length);
+                for (int value : values)
+                    list.add(value);
+                return list;
+            }
+            case 12: {
+                long[] values = (long[]) tag.get();
+                List<Object> list = new ArrayList<>(values.length);
+                for (long value : values)
+                    list.add(value);
+                return list;
+            }
+            case 9: {
+                NBTListTag values = (NBTListTag) tag;
+                int size = values.size();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(toJava(values.get(i)));
+                return list;
+            }
+        }
+        throw new NBTDeserializationException(tag, "Expected a list or array for a collection but found a " + tag.type() + ".");
+    }
+
+    private static Map<String, Object> toMap(NBTCompoundTag tag) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String key : tag.keys())
+            map.put(key, toJava(tag.getTag(key)));
+        return map;
+    }
+
+    /**
+     * Serialize a collection. Collections where every element is an Integer, Byte or
+     * Long are unboxed into the matching array tag, anything else becomes a list
+     * of the serialized elements.
+     */
+    private static NBTBaseTag collection(Collection<?> items, SerializationContext context) {
+        TagFactory factory = context.factory();
+        if (items.isEmpty())
+            return factory.newListTag();
+
+        Class<?> common = commonClass(items);
+        if (common == Integer.class) {
+            int[] values = new int[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Integer) item;
+            return factory.newIntArrayTag(values);
+        }
+        if (common == Byte.class) {
+            byte[] values = new byte[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Byte) item;
+            return factory.newByteArrayTag(values);
+        }
+        if (common == Long.class) {
+            long[] values = new long[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Long) item;
+            return longs(values, context);
+        }
+        if (common == Double.class) {
+            NBTListTag list = factory.newListTag();
+            double[] values = new double[items.size()];
+            int i = 0;
+            for (Object item : items)
+                values[i++] = (Double) item;
+            list.addAll(values);
+            return list;
+        }
+
+        NBTListTag list = factory.newListTag();
+        for (Object item : items) {
+            if (item == null)
+                throw new NBTSerializationException("Cannot serialize a collection containing null.");
+            NBTBaseTag tag = context.serialize(item);
+            try {
+                list.add(tag);
+            } catch (ClassCastException e) {
+                throw new NBTSerializationException("Every element of a collection must serialize to the same tag type but found a "
+                        + tag.type() + " in a list of " + NBTType.getName(list.valueType()) + ".", e);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the class shared by every element, or null if they differ
+     * or there is a null element
+     */
+    private static Class<?> commonClass(Collection<?> items) {
+        Class<?> common = null;
+        for (Object item : items) {
+            if (item == null)
+                return null;
+            if (common == null)
+                common = item.getClass();
+            else if (common != item.getClass())
+                return null;
+        }
+        return common;
+    }
+
+    /**
+     * Long array tags were added in 1.12, older versions get a list of longs instead.
+     */
+    static NBTBaseTag longs(long[] values, SerializationContext context) {
+        if (longArrays(context))
+            return context.factory().newLongArrayTag(values);
+        NBTListTag list = context.factory().newListTag();
+        for (long value : values)
+            list.add(context.factory().newLongTag(value));
+        return list;
+    }
+
+    /**
+     * Read a long[] written by {@link #longs(long[], SerializationContext)}, from either
+     * a long array tag or a list of longs. The array is a copy of the tag's values.
+     */
+    static long[] readLongs(NBTBaseTag tag) {
+        if (tag.type().isList()) {
+            NBTListTag list = (NBTListTag) tag;
+            long[] values = new long[list.size()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = number(list.get(i), "long[]").getLong();
+            return values;
+        }
+        return ((NBTLongArrayTag) expect(tag, NBTType.LONG_ARRAY, "long[]")).copy();
+    }
+
+    private static boolean longArrays(SerializationContext context) {
+        Boolean supported = longArrays;
+        if (supported == null) {
+            try {
+                context.factory().newLongArrayTag(new long[0]);
+                supported = true;
+            } catch (UnsupportedOperationException e) {
+                supported = false;
+            }
+            longArrays = supported;
+        }
+        return supported;
+    }
+
+    private static NBTNumberTag number(NBTBaseTag tag, String typeName) {
+        if (!(tag instanceof NBTNumberTag))
+            throw new NBTDeserializationException(tag, "Expected a number for a " + typeName + " but found a " + tag.type() + ".");
+        return (NBTNumberTag) tag;
+    }
+
+    private static NBTBaseTag expect(NBTBaseTag tag, NBTType type, String typeName) {
+        if (tag.type() != type)
+            throw new NBTDeserializationException(tag, "Expected a " + type + " for a " + typeName + " but found a " + tag.type() + ".");
+        return tag;
+    }
+
+    private static final class BuiltInStreamSerializer implements NBTStreamSerializer<Object> {
+        @Override
+        public void serialize(Object item, NBTStreamWriter out, SerializationContext context) {
+            write(item, out, context);
+        }
+    }
+
+    /**
+     * Reads and writes the constants of an enum. Constants are written by name, which
+     * survives reordering, or by ordinal in the smallest number tag that fits every
+     * constant. Both forms are accepted when reading so a type can be switched
+     * between them without losing data.
+     * @param <E> the enum type
+     */
+    static final class EnumCodec<E extends Enum<E>> implements NBTSerializer<E>, NBTDeserializer<E>, NBTStreamSerializer<E> {
+        private final Class<E> type;
+        private final E[] constants;
+        private final Map<String, E> byName;
+        private final boolean ordinal;
+
+        EnumCodec(Class<E> type, boolean ordinal) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+            this.byName = new HashMap<>();
+            for (E constant : constants)
+                byName.put(constant.name(), constant);
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public NBTBaseTag serialize(E item, SerializationContext context) {
+            if (!ordinal)
+                return context.factory().newStringTag(item.name());
+            if (constants.length <= Byte.MAX_VALUE + 1)
+                return context.factory().newByteTag((byte) item.ordinal());
+            if (constants.length <= Short.MAX_VALUE + 1)
+                return context.factory().newShortTag((short) item.ordinal());
+            return context.factory().newIntTag(item.ordinal());
+        }
+
+        @Override
+        public void serialize(E item, NBTStreamWriter out, SerializationContext context) {
+            if (!ordinal)
+                out.value(item.name());
+            else if (constants.length <= Byte.MAX_VALUE + 1)
+                out.value((byte) item.ordinal());
+            else if (constants.length <= Short.MAX_VALUE + 1)
+                out.value((short) item.ordinal());
+            else
+                out.value(item.ordinal());
+        }
+
+        @Override
+        public E deserialize(NBTBaseTag tag, SerializationContext context) {
+            if (tag.type().isString()) {
+                E constant = byName.get(tag.get());
+                if (constant == null)
+                    throw new NBTDeserializationException(tag, "There is no " + type.getSimpleName() + " named " + tag.get() + ".");
+                return constant;
+            }
+            int ordinal = number(tag, type.getSimpleName()).getInt();
+            if (ordinal < 0 || ordinal >= constants.length)
+                throw new NBTDeserializationException(tag, "There is no " + type.getSimpleName() + " with the ordinal " + ordinal + ".");
+            return constants[ordinal];
+        }
+    }
+}
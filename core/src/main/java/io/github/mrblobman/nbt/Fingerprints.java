@@ -0,0 +1,157 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * Computes 64 bit structural fingerprints of tags. Two tags with the same
+ * structure and values have the same fingerprint no matter if they are live
+ * {@link NBTBaseTag}s or immutable values (see {@link ImmutableTagValues}), so a
+ * fingerprint mismatch proves that 2 tags are not equal. Compound fingerprints do
+ * not depend on the iteration order of the keys.
+ */
+final class Fingerprints {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private Fingerprints() {}
+
+    /**
+     * The finalization step of MurmurHash3, spreads the bits of {@code h}.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static long combine(long h, long value) {
+        return mix(h * GOLDEN + value);
+    }
+
+    static long ofString(String value) {
+        long h = value.length();
+        for (int i = 0; i < value.length(); i++)
+            h = 31 * h + value.charAt(i);
+        return h;
+    }
+
+    static long ofEntry(String key, long valueFingerprint) {
+        return mix(ofString(key) * GOLDEN + valueFingerprint);
+    }
+
+    static long ofCompound(long entrySum, int size) {
+        return combine(combine(NBTType.COMPOUND.ID, size), entrySum);
+    }
+
+    static long startList(int size) {
+        return combine(NBTType.LIST.ID, size);
+    }
+
+    /**
+     * Fingerprint a live tag.
+     * @param tag the tag
+     * @return the fingerprint of the tag
+     */
+    static long of(NBTBaseTag tag) {
+        if (tag.type().isCompound()) {
+            NBTCompoundTag compound = (NBTCompoundTag) tag;
+            long sum = 0;
+            int size = 0;
+            for (String key : compound.keys()) {
+                sum += ofEntry(key, of(compound.getTag(key)));
+                size++;
+            }
+            return ofCompound(sum, size);
+        }
+        if (tag.type().isList()) {
+            NBTListTag list = (NBTListTag) tag;
+            int size = list.size();
+            long h = startList(size);
+            for (int i = 0; i < size; i++)
+                h = combine(h, of(list.get(i)));
+            return h;
+        }
+        return ofPrimitive(tag.type().ID, tag.get());
+    }
+
+    /**
+     * Fingerprint an immutable value.
+     * @param value the value
+     * @return the fingerprint of the value
+     */
+    static long ofValue(Object value) {
+        if (value instanceof ImmutableNBTCompoundTag)
+            return ((ImmutableNBTCompoundTag) value).fingerprint();
+        if (value instanceof ImmutableNBTListTag)
+            return ((ImmutableNBTListTag) value).fingerprint();
+        return ofPrimitive(ImmutableTagValues.typeOf(value), value);
+    }
+
+    private static long ofPrimitive(int type, Object value) {
+        long h;
+        switch (type) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                h = ((Number) value).longValue();
+                break;
+            case 5:
+                h = Float.floatToIntBits((Float) value);
+                break;
+            case 6:
+                h = Double.doubleToLongBits((Double) value);
+                break;
+            case 7: {
+                byte[] array = (byte[]) value;
+                h = array.length;
+                for (byte b : array)
+                    h = 31 * h + b;
+                break;
+            }
+            case 8:
+                h = value instanceof Utf8String ? ((Utf8String) value).fingerprint() : ofString((String) value);
+                break;
+            case 11: {
+                int[] array = (int[]) value;
+                h = array.length;
+                for (int i : array)
+                    h = 31 * h + i;
+                break;
+            }
+            case 12: {
+                long[] array = (long[]) value;
+                h = array.length;
+                for (long l : array)
+                    h = 31 * h + l;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown tag type id " + type);
+        }
+        return combine(type, h);
+    }
+}
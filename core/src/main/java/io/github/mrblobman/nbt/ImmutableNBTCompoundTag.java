@@ -0,0 +1,1022 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.*;
+
+/**
+ * An ImmutableNBTCompoundTag is a persistent mapping of String -&gt; value. Instead of
+ * modifying the tag, {@link #with(String, Object)} and {@link #without(String)} return
+ * a new version that shares all of the unchanged parts of this one. Keeping an old
+ * version around is therefore a cheap snapshot of the data.
+ * <br>
+ * Most tags only have a handful of mappings so tags with up to 8 of them keep parallel
+ * key and value arrays that are scanned linearly. Larger tags are stored in a hash trie
+ * whose leaves are small open addressed buckets of parallel arrays, a new version only
+ * copies the O(log n) branches on the path to the changed key and the one bucket holding
+ * it. Primitive values are kept unboxed in a side {@code long[]} in both layouts.
+ * <br>
+ * Values are immutable and are one of {@link Byte}, {@link Short}, {@link Integer},
+ * {@link Long}, {@link Float}, {@link Double}, {@link String}, {@code byte[]}, {@code int[]},
+ * {@code long[]}, {@link ImmutableNBTCompoundTag} or {@link ImmutableNBTListTag}.
+ * Arrays are copied on the way in and on the way out and live {@link NBTBaseTag}s are
+ * deep copied into immutable values.
+ * <br>
+ * Immutable tags are not backed by an nms tag, use {@link #copyOf(NBTCompoundTag)} and
+ * {@link #toTag()} to convert between the two. As they can never change they are safe
+ * to share between threads, see {@link NBTCompoundTag#snapshot()}.
+ */
+public final class ImmutableNBTCompoundTag {
+    private static final int SMALL_MAX = 8;
+    private static final int BUCKET_MAX = 8;
+    private static final int BUCKET_CAPACITY = 16;
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The compound tag without any mappings.
+     */
+    public static final ImmutableNBTCompoundTag EMPTY = new ImmutableNBTCompoundTag(new Bucket(new String[0], new Object[0], null, 0, -1), 0);
+
+    //Tags with up to SMALL_MAX mappings have a single linear bucket as their root,
+    //larger tags have a Branch as their root.
+    private final Object root;
+    private final int size;
+    private long fingerprint;
+
+    private ImmutableNBTCompoundTag(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * A leaf of parallel key and value arrays. A primitive value is stored as its
+     * NBTType in values and its bits in primitives, everything else is stored in
+     * values. The linear bucket of a small tag has arrays of exactly count slots.
+     * The buckets of the trie use linear probing over arrays with a power of 2
+     * length of at least twice the count, empty slots have a null key.
+     */
+    private static final class Bucket {
+        final String[] keys;
+        final Object[] values;
+        final long[] primitives;
+        final int count;
+        //The number of hash bits used by the branches above this bucket, -1 for
+        //the linear bucket of a small tag
+        final int shift;
+
+        Bucket(String[] keys, Object[] values, long[] primitives, int count, int shift) {
+            this.keys = keys;
+            this.values = values;
+            this.primitives = primitives;
+            this.count = count;
+            this.shift = shift;
+        }
+
+        /**
+         * @return the slot of the key or -1 if there is no mapping for it
+         */
+        int indexOf(String key, int hash) {
+            if (shift >= 0) {
+                int slot = probe(keys, key, hash, shift);
+                return keys[slot] == null ? -1 : slot;
+            }
+            //Keys are interned so the identity check usually hits first
+            for (int i = 0; i < count; i++) {
+                if (keys[i] == key)
+                    return i;
+            }
+            for (int i = 0; i < count; i++) {
+                if (keys[i].equals(key))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Box the value in slot {@code index}.
+         */
+        Object valueAt(int index) {
+            Object value = values[index];
+            if (!(value instanceof NBTType))
+                return value;
+            long bits = primitives[index];
+            switch (((NBTType) value).ID) {
+                case 1:
+                    return (byte) bits;
+                case 2:
+                    return (short) bits;
+                case 3:
+                    return (int) bits;
+                case 4:
+                    return bits;
+                case 5:
+                    return Float.intBitsToFloat((int) bits);
+                default:
+                    return Double.longBitsToDouble(bits);
+            }
+        }
+    }
+
+    /**
+     * An inner node of the trie. The children are the branches and buckets for
+     * the set bits of the bitmap, indexed by the next 5 bits of the key hashes.
+     */
+    private static final class Branch {
+        final int bitmap;
+        final Object[] children;
+        final int shift;
+
+        Branch(int bitmap, Object[] children, int shift) {
+            this.bitmap = bitmap;
+            this.children = children;
+            this.shift = shift;
+        }
+    }
+
+    /**
+     * Create an immutable deep copy of a live tag.
+     * @param tag the tag to copy
+     * @return the immutable copy
+     */
+    public static ImmutableNBTCompoundTag copyOf(NBTCompoundTag tag) {
+        Set<String> keys = tag.keys();
+        if (keys.isEmpty())
+            return EMPTY;
+
+        NBTKeyDictionary dictionary = NBTKeyDictionary.global();
+        int size = keys.size();
+        String[] entryKeys = new String[size];
+        Object[] values = new Object[size];
+        int i = 0;
+        for (String key : keys) {
+            entryKeys[i] = dictionary.intern(key);
+            values[i++] = ImmutableTagValues.freeze(tag.getTag(key));
+        }
+        return fromEntries(entryKeys, values, size);
+    }
+
+    /**
+     * Build a tag from decoded mappings. The values must already be immutable
+     * and owned by the new tag. If a key appears more than once the last value
+     * is kept.
+     */
+    static ImmutableNBTCompoundTag fromEntries(String[] keys, Object[] values, int size) {
+        if (size == 0)
+            return EMPTY;
+
+        if (size <= SMALL_MAX) {
+            String[] smallKeys = new String[size];
+            Object[] smallValues = new Object[size];
+            long[] primitives = null;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int index = n;
+                for (int j = 0; j < n; j++) {
+                    if (smallKeys[j].equals(keys[i]))
+                        index = j;
+                }
+                if (index == n)
+                    smallKeys[n++] = keys[i];
+                primitives = store(smallValues, primitives, index, values[i], size);
+            }
+            if (n < size) {
+                smallKeys = Arrays.copyOf(smallKeys, n);
+                smallValues = Arrays.copyOf(smallValues, n);
+                if (primitives != null)
+                    primitives = Arrays.copyOf(primitives, n);
+            }
+            return new ImmutableNBTCompoundTag(new Bucket(smallKeys, smallValues, primitives, n, -1), n);
+        }
+
+        int[] hashes = new int[size];
+        int[] entries = new int[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(keys[i]);
+            entries[i] = i;
+        }
+        Object root = build(keys, values, hashes, entries, size, 0);
+        int n = 0;
+        for (Bucket bucket : buckets(root))
+            n += bucket.count;
+        if (n <= SMALL_MAX)
+            return compact(root, n, null);
+        return new ImmutableNBTCompoundTag(root, n);
+    }
+
+    /**
+     * Build the trie node for the given entries whose hashes agree on the
+     * lowest {@code shift} bits.
+     * @param entries the indexes of the entries in {@code keys} and {@code values}
+     */
+    private static Object build(String[] keys, Object[] values, int[] hashes, int[] entries, int count, int shift) {
+        if (count <= BUCKET_MAX || shift >= Integer.SIZE)
+            return bucketOf(keys, values, hashes, entries, count, shift);
+
+        int[] counts = new int[1 << BITS];
+        for (int i = 0; i < count; i++)
+            counts[(hashes[entries[i]] >>> shift) & MASK]++;
+        int bitmap = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                bitmap |= 1 << i;
+        }
+        Object[] children = new Object[Integer.bitCount(bitmap)];
+        int child = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0)
+                continue;
+            int[] group = new int[counts[i]];
+            int n = 0;
+            for (int j = 0; j < count; j++) {
+                if (((hashes[entries[j]] >>> shift) & MASK) == i)
+                    group[n++] = entries[j];
+            }
+            children[child++] = build(keys, values, hashes, group, n, shift + BITS);
+        }
+        return new Branch(bitmap, children, shift);
+    }
+
+    private static Bucket bucketOf(String[] keys, Object[] values, int[] hashes, int[] entries, int count, int shift) {
+        int capacity = bucketCapacity(count);
+        String[] bucketKeys = new String[capacity];
+        Object[] bucketValues = new Object[capacity];
+        long[] primitives = null;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int entry = entries[i];
+            int slot = probe(bucketKeys, keys[entry], hashes[entry], shift);
+            if (bucketKeys[slot] == null) {
+                bucketKeys[slot] = keys[entry];
+                n++;
+            }
+            primitives = store(bucketValues, primitives, slot, values[entry], capacity);
+        }
+        return new Bucket(bucketKeys, bucketValues, primitives, n, shift);
+    }
+
+    /**
+     * @return the table length for a bucket of {@code count} mappings, a power of
+     * 2 that keeps the table at most half full
+     */
+    private static int bucketCapacity(int count) {
+        return Math.max(BUCKET_CAPACITY, Integer.highestOneBit(count * 2 - 1) << 1);
+    }
+
+    /**
+     * @return the spread hash of the key that indexes the trie
+     */
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Find the slot holding the key or, if it is not in the table, the empty
+     * slot where it would be inserted. The keys of a bucket agree on the lowest
+     * {@code shift} bits of their hashes so the slots are picked by the bits above.
+     */
+    private static int probe(String[] table, String key, int hash, int shift) {
+        int mask = table.length - 1;
+        int slot = Integer.rotateRight(hash, shift) & mask;
+        while (true) {
+            String existing = table[slot];
+            //Keys are interned so the identity check usually hits first
+            if (existing == null || existing == key || existing.equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Collect the buckets of a trie.
+     */
+    private static List<Bucket> buckets(Object node) {
+        List<Bucket> buckets = new ArrayList<>();
+        collect(node, buckets);
+        return buckets;
+    }
+
+    private static void collect(Object node, List<Bucket> buckets) {
+        if (node instanceof Bucket) {
+            buckets.add((Bucket) node);
+            return;
+        }
+        for (Object child : ((Branch) node).children)
+            collect(child, buckets);
+    }
+
+    /**
+     * Copy the {@code size} mappings of a trie, except for {@code skip}, into a
+     * tag with the small layout without boxing the primitives.
+     */
+    private static ImmutableNBTCompoundTag compact(Object root, int size, String skip) {
+        if (size == 0)
+            return EMPTY;
+        String[] smallKeys = new String[size];
+        Object[] smallValues = new Object[size];
+        long[] smallPrimitives = null;
+        int n = 0;
+        for (Bucket bucket : buckets(root)) {
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] == null || bucket.keys[i].equals(skip))
+                    continue;
+                smallKeys[n] = bucket.keys[i];
+                smallValues[n] = bucket.values[i];
+                if (bucket.values[i] instanceof NBTType) {
+                    if (smallPrimitives == null)
+                        smallPrimitives = new long[size];
+                    smallPrimitives[n] = bucket.primitives[i];
+                }
+                n++;
+            }
+        }
+        return new ImmutableNBTCompoundTag(new Bucket(smallKeys, smallValues, smallPrimitives, size, -1), size);
+    }
+
+    /**
+     * Store an immutable value at {@code index} of the value columns, unboxing
+     * it if it is a primitive.
+     * @return the primitives column, allocated if it was null and is now needed
+     */
+    private static long[] store(Object[] values, long[] primitives, int index, Object value, int length) {
+        NBTType type = primitiveType(value);
+        if (type == null) {
+            values[index] = value;
+            return primitives;
+        }
+        if (primitives == null)
+            primitives = new long[length];
+        values[index] = type;
+        if (value instanceof Float)
+            primitives[index] = Float.floatToIntBits((Float) value);
+        else if (value instanceof Double)
+            primitives[index] = Double.doubleToLongBits((Double) value);
+        else
+            primitives[index] = ((Number) value).longValue();
+        return primitives;
+    }
+
+    private static NBTType primitiveType(Object value) {
+        if (value instanceof Byte) return NBTType.BYTE;
+        if (value instanceof Short) return NBTType.SHORT;
+        if (value instanceof Integer) return NBTType.INT;
+        if (value instanceof Long) return NBTType.LONG;
+        if (value instanceof Float) return NBTType.FLOAT;
+        if (value instanceof Double) return NBTType.DOUBLE;
+        return null;
+    }
+
+    /**
+     * Get the number of mappings in this tag. This only counts tags
+     * that are one level deep.
+     * @return the number of mappings that exist in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no mappings in this tag, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the bucket that holds the key if it is mapped, null if the
+     * trie has no bucket for its hash
+     */
+    private Bucket bucketFor(int hash) {
+        Object node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int bit = 1 << ((hash >>> branch.shift) & MASK);
+            if ((branch.bitmap & bit) == 0)
+                return null;
+            node = branch.children[Integer.bitCount(branch.bitmap & (bit - 1))];
+        }
+        return (Bucket) node;
+    }
+
+    /**
+     * Get the value at the given key without copying arrays.
+     */
+    Object getRaw(String key) {
+        int hash = hash(key);
+        Bucket bucket = bucketFor(hash);
+        if (bucket == null)
+            return null;
+        int index = bucket.indexOf(key, hash);
+        return index < 0 ? null : bucket.valueAt(index);
+    }
+
+    /**
+     * @return the type id of the value at the key or -1 if there is no mapping
+     */
+    private int typeOf(String key) {
+        int hash = hash(key);
+        Bucket bucket = bucketFor(hash);
+        int index = bucket == null ? -1 : bucket.indexOf(key, hash);
+        if (index < 0)
+            return -1;
+        Object value = bucket.values[index];
+        return value instanceof NBTType ? ((NBTType) value).ID : ImmutableTagValues.typeOf(value);
+    }
+
+    /**
+     * @return the bits of the primitive at the key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    private long getPrimitive(String key, NBTType type) {
+        int hash = hash(key);
+        Bucket bucket = bucketFor(hash);
+        int index = bucket == null ? -1 : bucket.indexOf(key, hash);
+        return index >= 0 && bucket.values[index] == type ? bucket.primitives[index] : 0;
+    }
+
+    /**
+     * Get all of the mappings without copying arrays.
+     * @return the keys and values, alternating
+     */
+    Object[] entries() {
+        Object[] entries = new Object[size * 2];
+        int n = 0;
+        for (Bucket bucket : buckets(root)) {
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] == null)
+                    continue;
+                entries[n++] = bucket.keys[i];
+                entries[n++] = bucket.valueAt(i);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param key the key who's existence is being checked
+     * @return true if the key exists in the map, false otherwise
+     */
+    public boolean hasKey(String key) {
+        return typeOf(key) >= 0;
+    }
+
+    /**
+     * @param key the key who's existence is being checked.
+     * @param type the type that the key should point to
+     * @return true if the key exists in the map and points to a value of
+     * the given type, false otherwise
+     */
+    public boolean hasKeyOfType(String key, NBTType type) {
+        return typeOf(key) == type.ID;
+    }
+
+    /**
+     * Get the type of the value at the given key.
+     * @param key the key of the value
+     * @return the type of the value or null if there is no mapping for the key
+     */
+    public NBTType getType(String key) {
+        int type = typeOf(key);
+        return type < 0 ? null : NBTType.getType(type);
+    }
+
+    /**
+     * Retrieve the value at the given key. Arrays are copied before being
+     * returned.
+     * @param key the key that the value is located at.
+     * @return the value or null if there is no mapping for the key
+     */
+    public Object get(String key) {
+        Object value = getRaw(key);
+        return value == null ? null : ImmutableTagValues.expose(value);
+    }
+
+    /**
+     * Get a {@link Set} containing the names of all of the mappings in this tag.
+     * @return a new set containing all of the keys that exist in this map
+     */
+    public Set<String> keys() {
+        Set<String> keys = new HashSet<>(size * 4 / 3 + 1);
+        for (Bucket bucket : buckets(root)) {
+            for (String key : bucket.keys) {
+                if (key != null)
+                    keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @param key the key that the byte value was put at.
+     * @return the byte value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public byte getByte(String key) {
+        return (byte) getPrimitive(key, NBTType.BYTE);
+    }
+
+    /**
+     * @param key the key that the boolean value was put at.
+     * @return the boolean value stored at the given key or false if they key does not exist
+     * or points to a value of a different type
+     */
+    public boolean getBoolean(String key) {
+        return getByte(key) != 0;
+    }
+
+    /**
+     * @param key the key that the short value was put at.
+     * @return the short value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public short getShort(String key) {
+        return (short) getPrimitive(key, NBTType.SHORT);
+    }
+
+    /**
+     * @param key the key that the int value was put at.
+     * @return the int value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public int getInt(String key) {
+        return (int) getPrimitive(key, NBTType.INT);
+    }
+
+    /**
+     * @param key the key that the long value was put at.
+     * @return the long value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public long getLong(String key) {
+        return getPrimitive(key, NBTType.LONG);
+    }
+
+    /**
+     * @param key the key that the float value was put at.
+     * @return the float value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public float getFloat(String key) {
+        return Float.intBitsToFloat((int) getPrimitive(key, NBTType.FLOAT));
+    }
+
+    /**
+     * @param key the key that the double value was put at.
+     * @return the double value stored at the given key or 0 if they key does not exist
+     * or points to a value of a different type
+     */
+    public double getDouble(String key) {
+        return Double.longBitsToDouble(getPrimitive(key, NBTType.DOUBLE));
+    }
+
+    /**
+     * @param key the key that the String value was put at.
+     * @return the String value stored at the given key or an empty String if they key does
+     * not exist or points to a value of a different type
+     */
+    public String getString(String key) {
+        Object value = getRaw(key);
+        return value instanceof String || value instanceof Utf8String ? value.toString() : "";
+    }
+
+    /**
+     * Check the String at the given key without decoding it if it was
+     * read by the {@link NBTCodec} and has not been decoded yet.
+     * @param key the key that the String value was put at.
+     * @param value the String to compare with
+     * @return true if the key points to a String equal to {@code value}, false otherwise
+     */
+    public boolean stringEquals(String key, String value) {
+        Object existing = getRaw(key);
+        if (existing instanceof Utf8String)
+            return ((Utf8String) existing).contentEquals(value);
+        return value.equals(existing);
+    }
+
+    /**
+     * Check the String at the given key without decoding it if it was
+     * read by the {@link NBTCodec} and has not been decoded yet.
+     * @param key the key that the String value was put at.
+     * @param prefix the String to compare with
+     * @return true if the key points to a String that starts with {@code prefix}, false otherwise
+     */
+    public boolean stringStartsWith(String key, String prefix) {
+        Object existing = getRaw(key);
+        if (existing instanceof Utf8String)
+            return ((Utf8String) existing).startsWith(prefix);
+        return existing instanceof String && ((String) existing).startsWith(prefix);
+    }
+
+    /**
+     * @param key the key that the byte[] value was put at.
+     * @return a copy of the byte[] value stored at the given key or an empty byte[] if they key does
+     * not exist or points to a value of a different type
+     */
+    public byte[] getByteArray(String key) {
+        Object value = getRaw(key);
+        return value instanceof byte[] ? ((byte[]) value).clone() : new byte[0];
+    }
+
+    /**
+     * @param key the key that the int[] value was put at.
+     * @return a copy of the int[] value stored at the given key or an empty int[] if they key does
+     * not exist or points to a value of a different type
+     */
+    public int[] getIntArray(String key) {
+        Object value = getRaw(key);
+        return value instanceof int[] ? ((int[]) value).clone() : new int[0];
+    }
+
+    /**
+     * @param key the key that the long[] value was put at.
+     * @return a copy of the long[] value stored at the given key or an empty long[] if they key does
+     * not exist or points to a value of a different type
+     */
+    public long[] getLongArray(String key) {
+        Object value = getRaw(key);
+        return value instanceof long[] ? ((long[]) value).clone() : new long[0];
+    }
+
+    /**
+     * @param key the key that the list value was put at.
+     * @return the list value stored at the given key or an empty list if they key does
+     * not exist or points to a value of a different type
+     */
+    public ImmutableNBTListTag getList(String key) {
+        Object value = getRaw(key);
+        return value instanceof ImmutableNBTListTag ? (ImmutableNBTListTag) value : ImmutableNBTListTag.EMPTY;
+    }
+
+    /**
+     * @param key the key that the compound value was put at.
+     * @return the compound value stored at the given key or an empty compound if they key does
+     * not exist or points to a value of a different type
+     */
+    public ImmutableNBTCompoundTag getCompound(String key) {
+        Object value = getRaw(key);
+        return value instanceof ImmutableNBTCompoundTag ? (ImmutableNBTCompoundTag) value : EMPTY;
+    }
+
+    /**
+     * See {@link NBTCompoundTag#getUUID(String)}.
+     * @param key the key that the UUID value was put at.
+     * @return the UUID value stored at the given key
+     */
+    public UUID getUUID(String key) {
+        return new UUID(getLong(key + "Most"), getLong(key + "Least"));
+    }
+
+    /**
+     * Create a version of this tag with the mapping {@code key -> value}. This
+     * tag is not modified.
+     * @param key the key of the mapping
+     * @param value the value to put at the key. Either an immutable value or
+     *              an {@link NBTBaseTag} that will be deep copied.
+     * @return the new version of this tag or this tag if the mapping already existed
+     * @throws IllegalArgumentException if the value cannot be stored in an immutable tag
+     */
+    public ImmutableNBTCompoundTag with(String key, Object value) {
+        return put(NBTKeyDictionary.global().intern(key), ImmutableTagValues.freeze(value), false);
+    }
+
+    /**
+     * Replace the value at an existing key with an equal but canonical instance.
+     * Unlike {@link #with(String, Object)} the value is replaced unless it is
+     * the exact same instance. See {@link NBTInterner}.
+     */
+    ImmutableNBTCompoundTag replace(String key, Object canonical) {
+        return put(key, canonical, true);
+    }
+
+    private ImmutableNBTCompoundTag put(String key, Object value, boolean identity) {
+        int hash = hash(key);
+        Bucket bucket = bucketFor(hash);
+        int index = bucket == null ? -1 : bucket.indexOf(key, hash);
+        if (index >= 0) {
+            Object existing = bucket.valueAt(index);
+            if (identity ? existing == value : ImmutableTagValues.equals(existing, value))
+                return this;
+        }
+
+        if (size < SMALL_MAX || size == SMALL_MAX && index >= 0) {
+            Bucket small = (Bucket) root;
+            if (index >= 0) {
+                //The keys are unchanged and can be shared with this version
+                Object[] newValues = small.values.clone();
+                long[] newPrimitives = store(newValues, small.primitives == null ? null : small.primitives.clone(), index, value, size);
+                return new ImmutableNBTCompoundTag(new Bucket(small.keys, newValues, newPrimitives, size, -1), size);
+            }
+            String[] newKeys = Arrays.copyOf(small.keys, size + 1);
+            Object[] newValues = Arrays.copyOf(small.values, size + 1);
+            long[] newPrimitives = store(newValues, small.primitives == null ? null : Arrays.copyOf(small.primitives, size + 1), size, value, size + 1);
+            newKeys[size] = key;
+            return new ImmutableNBTCompoundTag(new Bucket(newKeys, newValues, newPrimitives, size + 1, -1), size + 1);
+        }
+
+        if (size == SMALL_MAX) {
+            //Outgrew the small layout, move everything into a trie
+            Object[] entries = entries();
+            String[] keys = new String[size + 1];
+            Object[] values = new Object[size + 1];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (String) entries[i * 2];
+                values[i] = entries[i * 2 + 1];
+            }
+            keys[size] = key;
+            values[size] = value;
+            return fromEntries(keys, values, size + 1);
+        }
+
+        return new ImmutableNBTCompoundTag(put(root, key, hash, value), index >= 0 ? size : size + 1);
+    }
+
+    /**
+     * Copy the path to the key in the trie, putting the value in the copy of its bucket.
+     * @return the new version of {@code node}
+     */
+    private static Object put(Object node, String key, int hash, Object value) {
+        if (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int bit = 1 << ((hash >>> branch.shift) & MASK);
+            int index = Integer.bitCount(branch.bitmap & (bit - 1));
+            if ((branch.bitmap & bit) == 0) {
+                Object[] children = new Object[branch.children.length + 1];
+                System.arraycopy(branch.children, 0, children, 0, index);
+                System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+                children[index] = bucketOf(new String[]{ key }, new Object[]{ value }, new int[]{ hash }, new int[]{ 0 }, 1, branch.shift + BITS);
+                return new Branch(branch.bitmap | bit, children, branch.shift);
+            }
+            Object[] children = branch.children.clone();
+            children[index] = put(children[index], key, hash, value);
+            return new Branch(branch.bitmap, children, branch.shift);
+        }
+
+        Bucket bucket = (Bucket) node;
+        int slot = probe(bucket.keys, key, hash, bucket.shift);
+        if (bucket.keys[slot] != null) {
+            //The keys are unchanged and can be shared with this version
+            Object[] newValues = bucket.values.clone();
+            long[] newPrimitives = store(newValues, bucket.primitives == null ? null : bucket.primitives.clone(), slot, value, bucket.keys.length);
+            return new Bucket(bucket.keys, newValues, newPrimitives, bucket.count, bucket.shift);
+        }
+
+        int count = bucket.count + 1;
+        if (count > BUCKET_MAX && bucket.shift < Integer.SIZE) {
+            //Split the full bucket into a branch, the keys that share all of
+            //their hash bits stay together in a bucket that keeps growing
+            String[] keys = new String[count];
+            Object[] values = new Object[count];
+            int[] hashes = new int[count];
+            int[] entries = new int[count];
+            int n = 0;
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] == null)
+                    continue;
+                keys[n] = bucket.keys[i];
+                values[n] = bucket.valueAt(i);
+                hashes[n] = hash(keys[n]);
+                entries[n] = n;
+                n++;
+            }
+            keys[n] = key;
+            values[n] = value;
+            hashes[n] = hash;
+            entries[n] = n;
+            return build(keys, values, hashes, entries, count, bucket.shift);
+        }
+
+        int capacity = bucketCapacity(count);
+        String[] newKeys;
+        Object[] newValues;
+        long[] newPrimitives;
+        if (capacity == bucket.keys.length) {
+            newKeys = bucket.keys.clone();
+            newValues = bucket.values.clone();
+            newPrimitives = bucket.primitives == null ? null : bucket.primitives.clone();
+        } else {
+            newKeys = new String[capacity];
+            newValues = new Object[capacity];
+            newPrimitives = bucket.primitives == null ? null : new long[capacity];
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] == null)
+                    continue;
+                int to = probe(newKeys, bucket.keys[i], hash(bucket.keys[i]), bucket.shift);
+                newKeys[to] = bucket.keys[i];
+                newValues[to] = bucket.values[i];
+                if (newPrimitives != null)
+                    newPrimitives[to] = bucket.primitives[i];
+            }
+            slot = probe(newKeys, key, hash, bucket.shift);
+        }
+        newKeys[slot] = key;
+        newPrimitives = store(newValues, newPrimitives, slot, value, capacity);
+        return new Bucket(newKeys, newValues, newPrimitives, count, bucket.shift);
+    }
+
+    /**
+     * See {@link #with(String, Object)}. Note that there is no boolean tag
+     * type, this is represented as a byte.
+     * @param key the key of the mapping
+     * @param value the value to put at the key
+     * @return the new version of this tag
+     */
+    public ImmutableNBTCompoundTag withBoolean(String key, boolean value) {
+        return with(key, value ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * See {@link #with(String, Object)}. The UUID is stored as 2 longs
+     * in the same way as {@link NBTCompoundTag#putUUID(String, UUID)}.
+     * @param key the key of the mapping
+     * @param value the value to put at the key
+     * @return the new version of this tag
+     */
+    public ImmutableNBTCompoundTag withUUID(String key, UUID value) {
+        return with(key + "Most", value.getMostSignificantBits())
+                .with(key + "Least", value.getLeastSignificantBits());
+    }
+
+    /**
+     * Create a version of this tag without a mapping for {@code key}. This
+     * tag is not modified.
+     * @param key the key of the mapping to remove
+     * @return the new version of this tag or this tag if there was no mapping
+     */
+    public ImmutableNBTCompoundTag without(String key) {
+        int hash = hash(key);
+        Bucket bucket = bucketFor(hash);
+        int index = bucket == null ? -1 : bucket.indexOf(key, hash);
+        if (index < 0)
+            return this;
+        if (size - 1 <= SMALL_MAX)
+            return compact(root, size - 1, bucket.keys[index]);
+        return new ImmutableNBTCompoundTag(remove(root, hash, index), size - 1);
+    }
+
+    /**
+     * Copy the path to the key in slot {@code index} of its bucket, removing it
+     * from the copy of the bucket.
+     * @return the new version of {@code node} or null if it is left empty
+     */
+    private static Object remove(Object node, int hash, int index) {
+        if (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int bit = 1 << ((hash >>> branch.shift) & MASK);
+            int child = Integer.bitCount(branch.bitmap & (bit - 1));
+            Object removed = remove(branch.children[child], hash, index);
+            if (removed != null) {
+                Object[] children = branch.children.clone();
+                children[child] = removed;
+                return new Branch(branch.bitmap, children, branch.shift);
+            }
+            if (branch.children.length == 1)
+                return null;
+            Object[] children = new Object[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, child);
+            System.arraycopy(branch.children, child + 1, children, child, children.length - child);
+            return new Branch(branch.bitmap & ~bit, children, branch.shift);
+        }
+
+        Bucket bucket = (Bucket) node;
+        if (bucket.count == 1)
+            return null;
+        String[] newKeys = bucket.keys.clone();
+        Object[] newValues = bucket.values.clone();
+        long[] newPrimitives = bucket.primitives == null ? null : bucket.primitives.clone();
+        //Shift the following keys of the probe sequence back so that
+        //none of them are cut off from their home slot by the gap
+        int mask = newKeys.length - 1;
+        int gap = index;
+        for (int slot = (gap + 1) & mask; newKeys[slot] != null; slot = (slot + 1) & mask) {
+            int home = Integer.rotateRight(hash(newKeys[slot]), bucket.shift) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                newKeys[gap] = newKeys[slot];
+                newValues[gap] = newValues[slot];
+                if (newPrimitives != null)
+                    newPrimitives[gap] = newPrimitives[slot];
+                gap = slot;
+            }
+        }
+        newKeys[gap] = null;
+        newValues[gap] = null;
+        return new Bucket(newKeys, newValues, newPrimitives, bucket.count - 1, bucket.shift);
+    }
+
+    /**
+     * Build a new live tag with the same contents as this tag.
+     * @return the new tag
+     */
+    public NBTCompoundTag toTag() {
+        NBTCompoundTag tag = TagFactory.get().newCompoundTag();
+        for (Bucket bucket : buckets(root)) {
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] != null)
+                    tag.put(bucket.keys[i], ImmutableTagValues.thaw(bucket.valueAt(i)));
+            }
+        }
+        return tag;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ImmutableNBTCompoundTag)) return false;
+        ImmutableNBTCompoundTag other = (ImmutableNBTCompoundTag) obj;
+        if (size != other.size || fingerprint() != other.fingerprint()) return false;
+        for (Bucket bucket : buckets(root)) {
+            for (int i = 0; i < bucket.keys.length; i++) {
+                String key = bucket.keys[i];
+                if (key == null)
+                    continue;
+                int hash = hash(key);
+                Bucket otherBucket = other.bucketFor(hash);
+                int j = otherBucket == null ? -1 : otherBucket.indexOf(key, hash);
+                if (j < 0)
+                    return false;
+                Object value = bucket.values[i];
+                Object otherValue = otherBucket.values[j];
+                if (value instanceof NBTType) {
+                    if (value != otherValue || bucket.primitives[i] != otherBucket.primitives[j])
+                        return false;
+                } else if (otherValue instanceof NBTType || !ImmutableTagValues.equals(value, otherValue)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the structural fingerprint of this tag. Equal tags have equal fingerprints
+     * so a mismatch means the tags are different. The fingerprint is the same as
+     * the {@link NBTBaseTag#fingerprint() fingerprint} of an equal live tag. It is
+     * computed once and cached.
+     * @return the 64 bit fingerprint of this tag
+     */
+    public long fingerprint() {
+        long fp = fingerprint;
+        if (fp == 0) {
+            long sum = 0;
+            for (Bucket bucket : buckets(root)) {
+                for (int i = 0; i < bucket.keys.length; i++) {
+                    if (bucket.keys[i] == null)
+                        continue;
+                    Object value = bucket.values[i];
+                    long valueFp = value instanceof NBTType
+                            ? Fingerprints.combine(((NBTType) value).ID, bucket.primitives[i])
+                            : Fingerprints.ofValue(value);
+                    sum += Fingerprints.ofEntry(bucket.keys[i], valueFp);
+                }
+            }
+            fp = Fingerprints.ofCompound(sum, size);
+            //0 marks the fingerprint as not computed
+            fingerprint = fp = fp == 0 ? 1 : fp;
+        }
+        return fp;
+    }
+
+    @Override
+    public int hashCode() {
+        long fp = fingerprint();
+        return (int) (fp ^ (fp >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{");
+        boolean first = true;
+        for (Bucket bucket : buckets(root)) {
+            for (int i = 0; i < bucket.keys.length; i++) {
+                if (bucket.keys[i] == null)
+                    continue;
+                if (!first) out.append(',');
+                first = false;
+                out.append(bucket.keys[i]).append(':');
+                ImmutableTagValues.appendTo(out, bucket.valueAt(i));
+            }
+        }
+        return out.append('}').toString();
+    }
+}
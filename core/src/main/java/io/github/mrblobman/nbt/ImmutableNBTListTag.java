@@ -0,0 +1,541 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * An ImmutableNBTListTag is a persistent list of values that all share the same type.
+ * Instead of modifying the list, {@link #with(int, Object)} and {@link #add(Object)}
+ * return a new version that shares all of the unchanged parts of this one. The values
+ * are stored in a 32-way trie so each new version only copies the O(log n) nodes on
+ * the path to the changed index. Lists of numbers keep their values unboxed, each
+ * leaf of the trie is a primitive array such as an {@code int[]} for a list of ints.
+ * <br>
+ * See {@link ImmutableNBTCompoundTag} for the values that can be stored in the list.
+ */
+public final class ImmutableNBTListTag {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    /**
+     * The number of values in each leaf of the trie, every leaf except the last one is full.
+     */
+    static final int LEAF_SIZE = WIDTH;
+
+    /**
+     * The list without any values.
+     */
+    public static final ImmutableNBTListTag EMPTY = new ImmutableNBTListTag(0, 0, new Object[0], 0);
+
+    private final int valueType;
+    private final int size;
+    //A leaf when shift is 0, otherwise an Object[] of child nodes
+    private final Object root;
+    private final int shift;
+    private long fingerprint;
+
+    private ImmutableNBTListTag(int valueType, int size, Object root, int shift) {
+        this.valueType = valueType;
+        this.size = size;
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /**
+     * Create an immutable deep copy of a live list.
+     * @param tag the list to copy
+     * @return the immutable copy
+     */
+    public static ImmutableNBTListTag copyOf(NBTListTag tag) {
+        int size = tag.size();
+        if (size == 0)
+            return EMPTY;
+
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++)
+            values[i] = ImmutableTagValues.freeze(tag.get(i));
+        return fromValues(values, size);
+    }
+
+    /**
+     * Build a list from decoded values. The values must already be immutable,
+     * of the same type and owned by the new list.
+     */
+    static ImmutableNBTListTag fromValues(Object[] values, int size) {
+        if (size == 0)
+            return EMPTY;
+
+        int type = ImmutableTagValues.typeOf(values[0]);
+        Object[] leaves = new Object[(size + MASK) >>> BITS];
+        for (int i = 0; i < leaves.length; i++) {
+            int start = i << BITS;
+            int length = Math.min(size - start, WIDTH);
+            if (isNumber(type)) {
+                Object leaf = newLeaf(type, length);
+                for (int j = 0; j < length; j++)
+                    setInLeaf(leaf, j, values[start + j]);
+                leaves[i] = leaf;
+            } else {
+                leaves[i] = Arrays.copyOfRange(values, start, start + length);
+            }
+        }
+        return fromLeaves(type, size, leaves);
+    }
+
+    /**
+     * Build a list from its leaves, see {@link #LEAF_SIZE}. Lists of numbers must have
+     * primitive leaves of the value type, other lists have {@code Object[]} leaves. The
+     * leaves must already be immutable and owned by the new list.
+     */
+    static ImmutableNBTListTag fromLeaves(int valueType, int size, Object[] leaves) {
+        if (size == 0)
+            return EMPTY;
+
+        //Build the trie bottom up, one level at a time, instead of path
+        //copying for every value
+        Object[] level = leaves.length == ((size + MASK) >>> BITS) ? leaves : Arrays.copyOf(leaves, (size + MASK) >>> BITS);
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++)
+                parents[i] = Arrays.copyOfRange(level, i << BITS, Math.min(level.length, (i + 1) << BITS));
+            level = parents;
+            shift += BITS;
+        }
+
+        return new ImmutableNBTListTag(valueType, size, level[0], shift);
+    }
+
+    private static boolean isNumber(int type) {
+        return type >= NBTType.BYTE.ID && type <= NBTType.DOUBLE.ID;
+    }
+
+    private static Object newLeaf(int type, int length) {
+        switch (type) {
+            case 1:
+                return new byte[length];
+            case 2:
+                return new short[length];
+            case 3:
+                return new int[length];
+            case 4:
+                return new long[length];
+            case 5:
+                return new float[length];
+            case 6:
+                return new double[length];
+            default:
+                return new Object[length];
+        }
+    }
+
+    private static Object getInLeaf(Object leaf, int index) {
+        if (leaf instanceof Object[]) return ((Object[]) leaf)[index];
+        if (leaf instanceof int[]) return ((int[]) leaf)[index];
+        if (leaf instanceof double[]) return ((double[]) leaf)[index];
+        if (leaf instanceof byte[]) return ((byte[]) leaf)[index];
+        if (leaf instanceof short[]) return ((short[]) leaf)[index];
+        if (leaf instanceof long[]) return ((long[]) leaf)[index];
+        return ((float[]) leaf)[index];
+    }
+
+    private static void setInLeaf(Object leaf, int index, Object value) {
+        if (leaf instanceof Object[]) ((Object[]) leaf)[index] = value;
+        else if (leaf instanceof int[]) ((int[]) leaf)[index] = (Integer) value;
+        else if (leaf instanceof double[]) ((double[]) leaf)[index] = (Double) value;
+        else if (leaf instanceof byte[]) ((byte[]) leaf)[index] = (Byte) value;
+        else if (leaf instanceof short[]) ((short[]) leaf)[index] = (Short) value;
+        else if (leaf instanceof long[]) ((long[]) leaf)[index] = (Long) value;
+        else ((float[]) leaf)[index] = (Float) value;
+    }
+
+    /**
+     * Get the bits of a number in a primitive leaf the same way {@link Fingerprints} does.
+     */
+    private static long bitsInLeaf(Object leaf, int index) {
+        if (leaf instanceof int[]) return ((int[]) leaf)[index];
+        if (leaf instanceof double[]) return Double.doubleToLongBits(((double[]) leaf)[index]);
+        if (leaf instanceof byte[]) return ((byte[]) leaf)[index];
+        if (leaf instanceof short[]) return ((short[]) leaf)[index];
+        if (leaf instanceof long[]) return ((long[]) leaf)[index];
+        return Float.floatToIntBits(((float[]) leaf)[index]);
+    }
+
+    private static Object copyLeaf(int type, Object leaf, int length) {
+        Object copy = newLeaf(type, length);
+        System.arraycopy(leaf, 0, copy, 0, Math.min(length, Array.getLength(leaf)));
+        return copy;
+    }
+
+    /**
+     * Get the type id of the values in this list.
+     * @return the type id or 0 if the list {@link #isEmpty()}
+     */
+    public int valueType() {
+        return valueType;
+    }
+
+    /**
+     * @return the number of values in this list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no values in this list, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the leaf holding the value at {@code pos}. It is a primitive array
+     * if this is a list of numbers and an {@code Object[]} otherwise.
+     */
+    Object leafFor(int pos) {
+        if (pos < 0 || pos >= size)
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size);
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = ((Object[]) node)[(pos >>> level) & MASK];
+        return node;
+    }
+
+    /**
+     * Get the value at {@code pos}. Arrays are copied before being returned.
+     * @param pos the index of the value to get
+     * @return the value at index {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+     *                                   the list.
+     */
+    public Object get(int pos) {
+        return ImmutableTagValues.expose(getRaw(pos));
+    }
+
+    /**
+     * Get the value at {@code pos} without copying arrays. Numbers are boxed.
+     */
+    Object getRaw(int pos) {
+        return getInLeaf(leafFor(pos), pos & MASK);
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the byte at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of bytes
+     */
+    public byte getByte(int pos) {
+        return ((byte[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the short at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of shorts
+     */
+    public short getShort(int pos) {
+        return ((short[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the int at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of ints
+     */
+    public int getInt(int pos) {
+        return ((int[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the long at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of longs
+     */
+    public long getLong(int pos) {
+        return ((long[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the float at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of floats
+     */
+    public float getFloat(int pos) {
+        return ((float[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the double at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of doubles
+     */
+    public double getDouble(int pos) {
+        return ((double[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the String at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of Strings
+     */
+    public String getString(int pos) {
+        Object value = ((Object[]) leafFor(pos))[pos & MASK];
+        return value instanceof Utf8String ? value.toString() : (String) value;
+    }
+
+    /**
+     * Check the String at {@code pos} without decoding it if it was read by
+     * the {@link NBTCodec} and has not been decoded yet.
+     * @param pos the index of the value to check
+     * @param value the String to compare with
+     * @return true if the value at {@code pos} is a String equal to {@code value}, false otherwise
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     */
+    public boolean stringEquals(int pos, String value) {
+        Object existing = ((Object[]) leafFor(pos))[pos & MASK];
+        if (existing instanceof Utf8String)
+            return ((Utf8String) existing).contentEquals(value);
+        return value.equals(existing);
+    }
+
+    /**
+     * Check the String at {@code pos} without decoding it if it was read by
+     * the {@link NBTCodec} and has not been decoded yet.
+     * @param pos the index of the value to check
+     * @param prefix the String to compare with
+     * @return true if the value at {@code pos} is a String that starts with {@code prefix}, false otherwise
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     */
+    public boolean stringStartsWith(int pos, String prefix) {
+        Object existing = ((Object[]) leafFor(pos))[pos & MASK];
+        if (existing instanceof Utf8String)
+            return ((Utf8String) existing).startsWith(prefix);
+        return existing instanceof String && ((String) existing).startsWith(prefix);
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the compound at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of compounds
+     */
+    public ImmutableNBTCompoundTag getCompound(int pos) {
+        return (ImmutableNBTCompoundTag) ((Object[]) leafFor(pos))[pos & MASK];
+    }
+
+    /**
+     * @param pos the index of the value to get
+     * @return the list at {@code pos}
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in the list.
+     * @throws ClassCastException if this is not a list of lists
+     */
+    public ImmutableNBTListTag getList(int pos) {
+        return (ImmutableNBTListTag) ((Object[]) leafFor(pos))[pos & MASK];
+    }
+
+    private int checkType(Object value) {
+        int type = ImmutableTagValues.typeOf(value);
+        if (valueType != 0 && size != 0 && valueType != type)
+            throw new ClassCastException("Cannot add " + NBTType.getName(type) + " to a list of " + NBTType.getName(valueType));
+        return type;
+    }
+
+    /**
+     * Create a version of this list with the value at {@code pos} replaced
+     * by {@code value}. This list is not modified.
+     * @param pos the index in the list to set
+     * @param value the value to put into the list. Either an immutable value or
+     *              an {@link NBTBaseTag} that will be deep copied.
+     * @return the new version of this list
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+     *                                   the list.
+     * @throws ClassCastException if the value is not of the same type as the
+     *                            other values in the list.
+     */
+    public ImmutableNBTListTag with(int pos, Object value) {
+        if (pos < 0 || pos >= size)
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size);
+        Object frozen = ImmutableTagValues.freeze(value);
+        int type = checkType(frozen);
+        return new ImmutableNBTListTag(type, size, set(type, root, shift, pos, frozen), shift);
+    }
+
+    private static Object set(int type, Object node, int level, int pos, Object value) {
+        if (level == 0) {
+            Object copy = copyLeaf(type, node, Array.getLength(node));
+            setInLeaf(copy, pos & MASK, value);
+            return copy;
+        }
+        Object[] copy = ((Object[]) node).clone();
+        int index = (pos >>> level) & MASK;
+        copy[index] = set(type, copy[index], level - BITS, pos, value);
+        return copy;
+    }
+
+    /**
+     * Create a version of this list with {@code value} appended to the end.
+     * This list is not modified.
+     * @param value the value to append. Either an immutable value or
+     *              an {@link NBTBaseTag} that will be deep copied.
+     * @return the new version of this list
+     * @throws ClassCastException if the value is not of the same type as the
+     *                            other values in the list.
+     */
+    public ImmutableNBTListTag add(Object value) {
+        Object frozen = ImmutableTagValues.freeze(value);
+        int type = checkType(frozen);
+
+        if (size == 0)
+            return fromLeaves(type, 1, new Object[]{ newPath(type, 0, frozen) });
+        if (size == 1 << (shift + BITS)) {
+            //The trie is full, grow it by one level
+            Object[] newRoot = new Object[]{ root, newPath(type, shift, frozen) };
+            return new ImmutableNBTListTag(type, size + 1, newRoot, shift + BITS);
+        }
+        return new ImmutableNBTListTag(type, size + 1, append(type, root, shift, size, frozen), shift);
+    }
+
+    private static Object newPath(int type, int level, Object value) {
+        if (level > 0)
+            return new Object[]{ newPath(type, level - BITS, value) };
+        Object leaf = newLeaf(type, 1);
+        setInLeaf(leaf, 0, value);
+        return leaf;
+    }
+
+    private static Object append(int type, Object node, int level, int pos, Object value) {
+        int index = (pos >>> level) & MASK;
+        if (level == 0) {
+            Object copy = copyLeaf(type, node, index + 1);
+            setInLeaf(copy, index, value);
+            return copy;
+        }
+        Object[] children = (Object[]) node;
+        Object[] copy = Arrays.copyOf(children, Math.max(children.length, index + 1));
+        copy[index] = index < children.length
+                ? append(type, children[index], level - BITS, pos, value)
+                : newPath(type, level - BITS, value);
+        return copy;
+    }
+
+    /**
+     * Create a version of this list without the value at {@code pos}. All of the
+     * following values are shifted 1 position down so unlike {@link #with(int, Object)}
+     * and {@link #add(Object)} this rebuilds the list.
+     * @param pos the index of the value to remove
+     * @return the new version of this list
+     * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+     *                                   the list.
+     */
+    public ImmutableNBTListTag without(int pos) {
+        if (pos < 0 || pos >= size)
+            throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size);
+        ImmutableNBTListTag result = EMPTY;
+        for (int i = 0; i < size; i++) {
+            if (i != pos)
+                result = result.add(getRaw(i));
+        }
+        return result;
+    }
+
+    /**
+     * Build a new live list with the same contents as this list.
+     * @return the new list
+     */
+    public NBTListTag toTag() {
+        NBTListTag tag = TagFactory.get().newListTag();
+        for (int i = 0; i < size; i++)
+            tag.add(ImmutableTagValues.thaw(getRaw(i)));
+        return tag;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ImmutableNBTListTag)) return false;
+        ImmutableNBTListTag other = (ImmutableNBTListTag) obj;
+        if (size != other.size || valueType != other.valueType || fingerprint() != other.fingerprint()) return false;
+        for (int start = 0; start < size; start += WIDTH) {
+            Object leaf = leafFor(start);
+            Object otherLeaf = other.leafFor(start);
+            int length = Math.min(size - start, WIDTH);
+            for (int i = 0; i < length; i++) {
+                if (isNumber(valueType)
+                        ? bitsInLeaf(leaf, i) != bitsInLeaf(otherLeaf, i)
+                        : !ImmutableTagValues.equals(((Object[]) leaf)[i], ((Object[]) otherLeaf)[i]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the structural fingerprint of this list. See {@link ImmutableNBTCompoundTag#fingerprint()}.
+     * @return the 64 bit fingerprint of this list
+     */
+    public long fingerprint() {
+        long fp = fingerprint;
+        if (fp == 0) {
+            fp = Fingerprints.startList(size);
+            for (int start = 0; start < size; start += WIDTH) {
+                Object leaf = leafFor(start);
+                int length = Math.min(size - start, WIDTH);
+                for (int i = 0; i < length; i++) {
+                    fp = Fingerprints.combine(fp, isNumber(valueType)
+                            ? Fingerprints.combine(valueType, bitsInLeaf(leaf, i))
+                            : Fingerprints.ofValue(((Object[]) leaf)[i]));
+                }
+            }
+            //0 marks the fingerprint as not computed
+            fingerprint = fp = fp == 0 ? 1 : fp;
+        }
+        return fp;
+    }
+
+    @Override
+    public int hashCode() {
+        long fp = fingerprint();
+        return (int) (fp ^ (fp >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) out.append(',');
+            ImmutableTagValues.appendTo(out, getRaw(i));
+        }
+        return out.append(']').toString();
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.Arrays;
+
+/**
+ * Conversions between live tags and the values held by {@link ImmutableNBTCompoundTag}
+ * and {@link ImmutableNBTListTag}. An immutable value is one of {@link Byte}, {@link Short},
+ * {@link Integer}, {@link Long}, {@link Float}, {@link Double}, {@link String}, an owned
+ * {@code byte[]}, {@code int[]} or {@code long[]}, an {@link ImmutableNBTCompoundTag} or
+ * an {@link ImmutableNBTListTag}. Strings read by the {@link NBTCodec} may also be a
+ * {@link Utf8String} that is only decoded when it is exposed.
+ */
+final class ImmutableTagValues {
+
+    private ImmutableTagValues() {}
+
+    /**
+     * Get the type id of an immutable value.
+     * @param value the value
+     * @return the type id of the tag that would hold the value
+     * @throws IllegalArgumentException if the value cannot be stored in an immutable tag
+     */
+    static int typeOf(Object value) {
+        if (value instanceof Byte) return NBTType.BYTE.ID;
+        if (value instanceof Short) return NBTType.SHORT.ID;
+        if (value instanceof Integer) return NBTType.INT.ID;
+        if (value instanceof Long) return NBTType.LONG.ID;
+        if (value instanceof Float) return NBTType.FLOAT.ID;
+        if (value instanceof Double) return NBTType.DOUBLE.ID;
+        if (value instanceof byte[]) return NBTType.BYTE_ARRAY.ID;
+        if (value instanceof String || value instanceof Utf8String) return NBTType.STRING.ID;
+        if (value instanceof ImmutableNBTListTag) return NBTType.LIST.ID;
+        if (value instanceof ImmutableNBTCompoundTag) return NBTType.COMPOUND.ID;
+        if (value instanceof int[]) return NBTType.INT_ARRAY.ID;
+        if (value instanceof long[]) return NBTType.LONG_ARRAY.ID;
+        throw new IllegalArgumentException("Cannot store a " + (value == null ? "null" : value.getClass().getSimpleName()) + " in an immutable tag.");
+    }
+
+    /**
+     * Convert a value into an immutable value. Live tags are deep copied and
+     * arrays are copied so that the caller cannot modify them afterwards.
+     * @param value the value to convert
+     * @return the immutable value
+     * @throws IllegalArgumentException if the value cannot be stored in an immutable tag
+     */
+    static Object freeze(Object value) {
+        if (value instanceof NBTBaseTag) {
+            NBTBaseTag tag = (NBTBaseTag) value;
+            switch (tag.type().ID) {
+                case 9:
+                    return ImmutableNBTListTag.copyOf((NBTListTag) tag);
+                case 10:
+                    return ImmutableNBTCompoundTag.copyOf((NBTCompoundTag) tag);
+                default:
+                    return freeze(tag.get());
+            }
+        }
+        if (value instanceof byte[]) return ((byte[]) value).clone();
+        if (value instanceof int[]) return ((int[]) value).clone();
+        if (value instanceof long[]) return ((long[]) value).clone();
+        typeOf(value);
+        return value;
+    }
+
+    /**
+     * Prepare an immutable value to be handed to a caller. Arrays
+     * are copied, everything else is already immutable.
+     * @param value the immutable value
+     * @return the value safe to return
+     */
+    static Object expose(Object value) {
+        if (value instanceof Utf8String) return value.toString();
+        if (value instanceof byte[]) return ((byte[]) value).clone();
+        if (value instanceof int[]) return ((int[]) value).clone();
+        if (value instanceof long[]) return ((long[]) value).clone();
+        return value;
+    }
+
+    /**
+     * Build a new live tag holding the immutable value.
+     * @param value the immutable value
+     * @return the new tag
+     */
+    static NBTBaseTag thaw(Object value) {
+        TagFactory factory = TagFactory.get();
+        switch (typeOf(value)) {
+            case 1:
+                return factory.newByteTag((Byte) value);
+            case 2:
+                return factory.newShortTag((Short) value);
+            case 3:
+                return factory.newIntTag((Integer) value);
+            case 4:
+                return factory.newLongTag((Long) value);
+            case 5:
+                return factory.newFloatTag((Float) value);
+            case 6:
+                return factory.newDoubleTag((Double) value);
+            case 7:
+                return factory.newByteArrayTag(((byte[]) value).clone());
+            case 8:
+                return factory.newStringTag(value.toString());
+            case 9:
+                return ((ImmutableNBTListTag) value).toTag();
+            case 10:
+                return ((ImmutableNBTCompoundTag) value).toTag();
+            case 11:
+                return factory.newIntArrayTag(((int[]) value).clone());
+            default:
+                return factory.newLongArrayTag(((long[]) value).clone());
+        }
+    }
+
+    static boolean equals(Object a, Object b) {
+        if (a == b) return true;
+        if (a instanceof byte[] && b instanceof byte[]) return Arrays.equals((byte[]) a, (byte[]) b);
+        if (a instanceof int[] && b instanceof int[]) return Arrays.equals((int[]) a, (int[]) b);
+        if (a instanceof long[] && b instanceof long[]) return Arrays.equals((long[]) a, (long[]) b);
+        if (a instanceof Utf8String && b instanceof String) return ((Utf8String) a).contentEquals((String) b);
+        if (a instanceof String && b instanceof Utf8String) return ((Utf8String) b).contentEquals((String) a);
+        return a.equals(b);
+    }
+
+    static void appendTo(StringBuilder out, Object value) {
+        if (value instanceof Byte) out.append(value).append('b');
+        else if (value instanceof Short) out.append(value).append('s');
+        else if (value instanceof Long) out.append(value).append('L');
+        else if (value instanceof Float) out.append(value).append('f');
+        else if (value instanceof Double) out.append(value).append('d');
+        else if (value instanceof String || value instanceof Utf8String) out.append('"').append(value.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        else if (value instanceof byte[]) appendArray(out, 'B', Arrays.toString((byte[]) value));
+        else if (value instanceof int[]) appendArray(out, 'I', Arrays.toString((int[]) value));
+        else if (value instanceof long[]) appendArray(out, 'L', Arrays.toString((long[]) value));
+        else out.append(value);
+    }
+
+    private static void appendArray(StringBuilder out, char type, String elements) {
+        //Arrays.toString gives "[a, b]", replace the opening bracket with "[T;"
+        out.append('[').append(type).append(';').append(elements, 1, elements.length());
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.lang.reflect.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lazily deserialized views of a compound, see {@link SerializationContext#deserializeLazy(NBTBaseTag, Class)}.
+ * A view is a {@link Proxy} implementing an interface of getters. Each getter reads the
+ * value at the key of its property name, {@code getName()}, {@code isName()} and {@code name()}
+ * all read {@code "name"}, which matches the keys written by
+ * {@link NBTson.NBTsonBuilder#registerAuto(Class)} and the generated serializers.
+ * <br>
+ * Values are decoded on first access and remembered. Missing primitives are 0 or false
+ * and other missing values are null. Interfaces without a deserializer are returned as
+ * views of the nested compound so a whole tree can be browsed without decoding it.
+ */
+final class LazyView implements InvocationHandler {
+    private static final Object UNSET = new Object();
+    private static final ClassValue<Schema> SCHEMAS = new ClassValue<Schema>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return new Schema(type);
+        }
+    };
+
+    private final Schema schema;
+    private final NBTCompoundTag tag;
+    private final SerializationContext context;
+    private final Object[] values;
+
+    private LazyView(Schema schema, NBTCompoundTag tag, SerializationContext context) {
+        this.schema = schema;
+        this.tag = tag;
+        this.context = context;
+        this.values = new Object[schema.keys.length];
+        Arrays.fill(values, UNSET);
+    }
+
+    /**
+     * Create a view of the compound.
+     * @throws IllegalArgumentException if the type is not an interface of getters
+     */
+    static <T> T create(NBTCompoundTag tag, Class<T> type, SerializationContext context) {
+        Schema schema = SCHEMAS.get(type);
+        try {
+            return type.cast(schema.constructor.newInstance(new LazyView(schema, tag, context)));
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot create a view of " + type.getSimpleName() + ".", e);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        Integer index = schema.indices.get(method);
+        if (index != null)
+            return get(index);
+
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return schema.type.getSimpleName() + ImmutableNBTCompoundTag.copyOf(tag);
+        }
+        throw new UnsupportedOperationException(method.getName() + " is not a getter.");
+    }
+
+    private synchronized Object get(int index) {
+        Object value = values[index];
+        if (value == UNSET)
+            values[index] = value = decode(schema.keys[index], schema.types[index]);
+        return value;
+    }
+
+    private Object decode(NBTKey key, Class<?> type) {
+        if (type.isPrimitive()) {
+            if (type == int.class) return tag.getInt(key);
+            if (type == double.class) return tag.getDouble(key);
+            if (type == boolean.class) return tag.getBoolean(key);
+            if (type == long.class) return tag.getLong(key);
+            if (type == float.class) return tag.getFloat(key);
+            if (type == byte.class) return tag.getByte(key);
+            if (type == short.class) return tag.getShort(key);
+            return (char) tag.getShort(key);
+        }
+
+        NBTBaseTag value = tag.getTag(key);
+        if (value == null)
+            return null;
+        if (type.isInterface() && value.type().isCompound() && !context.canDeserialize(type))
+            return create((NBTCompoundTag) value, type, context);
+        return context.deserialize(value, type);
+    }
+
+    /**
+     * The getters of a view interface and the keys they read.
+     */
+    private static final class Schema {
+        final Class<?> type;
+        final Constructor<?> constructor;
+        final Map<Method, Integer> indices = new HashMap<>();
+        final NBTKey[] keys;
+        final Class<?>[] types;
+
+        Schema(Class<?> type) {
+            if (!type.isInterface())
+                throw new IllegalArgumentException(type.getSimpleName() + " must be an interface to be read lazily.");
+            this.type = type;
+            try {
+                this.constructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Cannot create a view of " + type.getSimpleName() + ".", e);
+            }
+
+            Method[] methods = type.getMethods();
+            Map<String, Integer> byName = new HashMap<>();
+            NBTKey[] keys = new NBTKey[methods.length];
+            Class<?>[] types = new Class<?>[methods.length];
+            for (Method method : methods) {
+                if (method.getParameterTypes().length != 0 || method.getReturnType() == void.class)
+                    throw new IllegalArgumentException(type.getSimpleName() + "." + method.getName() + " is not a getter.");
+                String name = propertyName(method);
+                Integer index = byName.get(name);
+                if (index == null) {
+                    index = byName.size();
+                    byName.put(name, index);
+                    keys[index] = NBTKey.of(name);
+                    types[index] = method.getReturnType();
+                } else if (types[index] != method.getReturnType()) {
+                    throw new IllegalArgumentException(type.getSimpleName() + " has getters of different types for " + name + ".");
+                }
+                indices.put(method, index);
+            }
+            this.keys = Arrays.copyOf(keys, byName.size());
+            this.types = Arrays.copyOf(types, byName.size());
+        }
+
+        private static String propertyName(Method method) {
+            String name = method.getName();
+            int prefix = name.startsWith("get") ? 3 : name.startsWith("is") && method.getReturnType() == boolean.class ? 2 : 0;
+            if (prefix == 0 || name.length() == prefix || !Character.isUpperCase(name.charAt(prefix)))
+                return name;
+            return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+        }
+    }
+}
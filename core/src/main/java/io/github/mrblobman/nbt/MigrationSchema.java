@@ -0,0 +1,148 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The migrations registered for a versioned type. The current version of the type is
+ * the newest version any of its migrations upgrade to. The shortest chain of migrations
+ * between 2 versions is worked out once and cached as a single {@link NBTMigration}.
+ */
+final class MigrationSchema {
+    private final Map<Integer, List<Step>> steps;
+    private final ConcurrentMap<Long, NBTMigration> chains = new ConcurrentHashMap<>();
+    private int version;
+
+    MigrationSchema() {
+        this.steps = new HashMap<>();
+    }
+
+    private MigrationSchema(MigrationSchema schema) {
+        this.steps = new HashMap<>();
+        for (Map.Entry<Integer, List<Step>> entry : schema.steps.entrySet())
+            this.steps.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        this.version = schema.version;
+    }
+
+    void add(int fromVersion, int toVersion, NBTMigration migration) {
+        if (fromVersion < 0 || toVersion <= fromVersion)
+            throw new IllegalArgumentException("A migration must go from a version of at least 0 to a newer version but was from "
+                    + fromVersion + " to " + toVersion + ".");
+        List<Step> from = steps.get(fromVersion);
+        if (from == null)
+            steps.put(fromVersion, from = new ArrayList<>());
+        from.add(new Step(fromVersion, toVersion, migration));
+        version = Math.max(version, toVersion);
+    }
+
+    /**
+     * @return a copy that does not see later registrations
+     */
+    MigrationSchema copy() {
+        return new MigrationSchema(this);
+    }
+
+    /**
+     * @return the current version of the type
+     */
+    int version() {
+        return version;
+    }
+
+    /**
+     * Get the migration that upgrades data from {@code fromVersion} to {@code toVersion}.
+     * @return the cached chain of migrations or null if there is no path
+     * between the versions
+     */
+    NBTMigration chain(int fromVersion, int toVersion) {
+        Long pair = (long) fromVersion << 32 | toVersion;
+        NBTMigration chain = chains.get(pair);
+        if (chain == null) {
+            chain = compile(fromVersion, toVersion);
+            if (chain == null)
+                return null;
+            NBTMigration existing = chains.putIfAbsent(pair, chain);
+            if (existing != null)
+                chain = existing;
+        }
+        return chain;
+    }
+
+    private NBTMigration compile(int fromVersion, int toVersion) {
+        //Breadth first so the path with the fewest migrations is found
+        Map<Integer, Step> reachedBy = new HashMap<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(fromVersion);
+        while (!queue.isEmpty() && !reachedBy.containsKey(toVersion)) {
+            List<Step> from = steps.get(queue.poll());
+            if (from == null)
+                continue;
+            for (Step step : from) {
+                if (step.toVersion <= toVersion && !reachedBy.containsKey(step.toVersion)) {
+                    reachedBy.put(step.toVersion, step);
+                    queue.add(step.toVersion);
+                }
+            }
+        }
+        if (!reachedBy.containsKey(toVersion))
+            return null;
+
+        LinkedList<NBTMigration> path = new LinkedList<>();
+        for (int at = toVersion; at != fromVersion; ) {
+            Step step = reachedBy.get(at);
+            path.addFirst(step.migration);
+            at = step.fromVersion;
+        }
+        return path.size() == 1 ? path.getFirst() : new Chain(path.toArray(new NBTMigration[path.size()]));
+    }
+
+    private static final class Step {
+        final int fromVersion;
+        final int toVersion;
+        final NBTMigration migration;
+
+        Step(int fromVersion, int toVersion, NBTMigration migration) {
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.migration = migration;
+        }
+    }
+
+    private static final class Chain implements NBTMigration {
+        private final NBTMigration[] migrations;
+
+        Chain(NBTMigration[] migrations) {
+            this.migrations = migrations;
+        }
+
+        @Override
+        public void migrate(NBTCompoundTag data) {
+            for (NBTMigration migration : migrations)
+                migration.migrate(data);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The modified UTF-8 encoding used for Strings by the binary NBT format (see
+ * {@link java.io.DataInput}). Unlike {@link java.io.DataInputStream#readUTF()} and
+ * {@link java.io.DataOutputStream#writeUTF(String)} these work directly on the
+ * caller's arrays and take a fast path for pure ASCII data, which nearly all keys
+ * and most values are.
+ */
+final class ModifiedUTF8 {
+    /**
+     * The maximum number of bytes in an encoded String, the length is written as an unsigned short.
+     */
+    static final int MAX_LENGTH = 0xFFFF;
+
+    private static final int MAX_CACHED_KEYS = 1024;
+    private static final ConcurrentMap<String, byte[]> ENCODED_KEYS = new ConcurrentHashMap<>();
+
+    private ModifiedUTF8() {}
+
+    /**
+     * Check if a range of encoded bytes is pure ASCII. The bytes are checked 8
+     * at a time by or-ing them together and testing the sign bit once.
+     */
+    static boolean isAscii(byte[] b, int off, int len) {
+        int end = off + len;
+        int i = off;
+        for (; i + 8 <= end; i += 8) {
+            if ((b[i] | b[i + 1] | b[i + 2] | b[i + 3] | b[i + 4] | b[i + 5] | b[i + 6] | b[i + 7]) < 0)
+                return false;
+        }
+        for (; i < end; i++) {
+            if (b[i] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decode a range of bytes.
+     * @throws NBTException if the bytes are not valid modified UTF-8
+     */
+    static String decode(byte[] b, int off, int len) {
+        if (isAscii(b, off, len))
+            return new String(b, off, len, StandardCharsets.ISO_8859_1);
+
+        char[] chars = new char[len];
+        int length = 0;
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            int c = b[i];
+            if (c >= 0) {
+                chars[length++] = (char) c;
+                i++;
+            } else {
+                long next = next(b, i, end);
+                chars[length++] = (char) next;
+                i = (int) (next >>> 16);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Decode the char starting at {@code i}.
+     * @return the index of the next char in the upper bits and the char in the low 16
+     * @throws NBTException if the bytes are not valid modified UTF-8
+     */
+    static long next(byte[] b, int i, int end) {
+        int c = b[i] & 0xFF;
+        if (c < 0x80)
+            return ((long) (i + 1) << 16) | c;
+        if ((c & 0xE0) == 0xC0 && i + 1 < end && (b[i + 1] & 0xC0) == 0x80)
+            return ((long) (i + 2) << 16) | ((c & 0x1F) << 6) | (b[i + 1] & 0x3F);
+        if ((c & 0xF0) == 0xE0 && i + 2 < end && (b[i + 1] & 0xC0) == 0x80 && (b[i + 2] & 0xC0) == 0x80)
+            return ((long) (i + 3) << 16) | ((c & 0x0F) << 12) | ((b[i + 1] & 0x3F) << 6) | (b[i + 2] & 0x3F);
+        throw new NBTException("Malformed modified UTF-8 string at byte " + i + ".");
+    }
+
+    /**
+     * Count the chars in a range of encoded bytes.
+     */
+    static int charCount(byte[] b, int off, int len) {
+        int count = 0;
+        for (int i = off; i < off + len; i++) {
+            if ((b[i] & 0xC0) != 0x80)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of bytes needed to encode {@code s}
+     */
+    static int encodedLength(String s) {
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == 0 || c >= 0x80)
+                length += c < 0x800 ? 1 : 2;
+        }
+        return length;
+    }
+
+    /**
+     * Encode {@code s} into {@code dst} which must have room for
+     * {@link #encodedLength(String)} bytes.
+     * @return the index after the last byte written
+     */
+    static int encode(String s, byte[] dst, int off) {
+        int length = s.length();
+        int i = 0;
+        //Most Strings are ASCII, copy those chars straight across
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == 0 || c >= 0x80)
+                break;
+            dst[off++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c != 0 && c < 0x80) {
+                dst[off++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[off++] = (byte) (0xC0 | (c >> 6));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                dst[off++] = (byte) (0xE0 | (c >> 12));
+                dst[off++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return off;
+    }
+
+    /**
+     * @return the encoded form of {@code s} in a new array
+     */
+    static byte[] encode(String s) {
+        byte[] b = new byte[encodedLength(s)];
+        encode(s, b, 0);
+        return b;
+    }
+
+    /**
+     * Get the encoded form of a compound key. The same few keys are written over
+     * and over so the encoded forms of the first {@value #MAX_CACHED_KEYS} are cached.
+     * @return the encoded key, this array must not be modified
+     */
+    static byte[] encodeKey(String key) {
+        byte[] encoded = ENCODED_KEYS.get(key);
+        if (encoded == null) {
+            encoded = encode(key);
+            if (ENCODED_KEYS.size() < MAX_CACHED_KEYS)
+                ENCODED_KEYS.putIfAbsent(key, encoded);
+        }
+        return encoded;
+    }
+}
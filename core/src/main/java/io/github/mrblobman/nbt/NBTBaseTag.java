@@ -30,6 +30,9 @@ import java.util.Objects;
  */
 public abstract class NBTBaseTag<T> {
     private Object handle;
+    //The wrapper that this one was read from, its fingerprint covers this tag too
+    private NBTBaseTag<?> parent;
+    private long fingerprint;
 
     protected NBTBaseTag(Object handle) {
         this.handle = Objects.requireNonNull(handle, "Cannot wrap a null handle.");
@@ -66,14 +69,79 @@ public abstract class NBTBaseTag<T> {
         return handle;
     }
 
+    /**
+     * Get the structural fingerprint of this tag. Equal tags have equal fingerprints
+     * so a mismatch means the tags are different, which makes it a cheap key for
+     * grouping or deduplicating tags. It matches the fingerprint of an equal
+     * {@link ImmutableNBTCompoundTag} or {@link ImmutableNBTListTag}.
+     * <br>
+     * The fingerprint is computed once and cached in this wrapper. The cache is cleared
+     * by the mutators of this wrapper and of the wrappers of nested tags read from it.
+     * Changes that do not go through those wrappers are not seen. These are changes
+     * made by the server, through another wrapper of the same nms tag or through the
+     * live array of an array tag, call {@link #invalidateFingerprint()} after making them.
+     * @return the 64 bit fingerprint of this tag
+     */
+    public long fingerprint() {
+        long fp = fingerprint;
+        if (fp == 0) {
+            fp = Fingerprints.of(this);
+            //0 marks the fingerprint as not computed
+            fingerprint = fp = fp == 0 ? 1 : fp;
+        }
+        return fp;
+    }
+
+    /**
+     * Clear the cached {@link #fingerprint() fingerprint} of this tag and of the tags
+     * that it was read from. Wrappers call this when they modify their nms tag.
+     */
+    public void invalidateFingerprint() {
+        for (NBTBaseTag<?> tag = this; tag != null; tag = tag.parent)
+            tag.fingerprint = 0;
+    }
+
+    /**
+     * Link the wrapper of a nested tag to this wrapper so that changing the nested
+     * tag clears the cached fingerprint of this one.
+     * @param tag the wrapper of a tag nested in this one, may be null
+     * @return {@code tag}
+     */
+    protected <W extends NBTBaseTag> W child(W tag) {
+        if (tag != null)
+            ((NBTBaseTag<?>) tag).parent = this;
+        return tag;
+    }
+
+    /**
+     * Compare the tag wrapped by this wrapper with another wrapper. Two wrappers are
+     * equal if the nms tags that they wrap are equal. A wrapper is never equal to
+     * an nms tag, compare the {@link #getHandle() handles} for that.
+     * <br>
+     * The cached {@link #fingerprint() fingerprints} are compared first so that
+     * different tags are usually told apart without walking the nms tags.
+     * @param obj the wrapper to compare with
+     * @return true if the tags have the same structure and values, false otherwise
+     */
     @Override
     public boolean equals(Object obj) {
-        return handle.equals(obj);
+        if (this == obj)
+            return true;
+        if (!(obj instanceof NBTBaseTag))
+            return false;
+        NBTBaseTag other = (NBTBaseTag) obj;
+        if (handle == other.handle)
+            return true;
+        return fingerprint() == other.fingerprint() && handle.equals(other.handle);
     }
 
+    /**
+     * @return a hash of the cached {@link #fingerprint() fingerprint}
+     */
     @Override
     public int hashCode() {
-        return handle.hashCode();
+        long fp = fingerprint();
+        return (int) (fp ^ (fp >>> 32));
     }
 
     @Override
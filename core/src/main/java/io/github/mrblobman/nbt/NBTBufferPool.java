@@ -0,0 +1,319 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of the temporary byte arrays and compression state used by the
+ * {@link NBTCodec}. Reading or writing a tag borrows its buffers from the pool
+ * and gives them back when done so that steady state encoding and decoding
+ * produce next to no garbage.
+ * <br>
+ * The codec uses the pool returned by {@link #get()}, which is a {@link #striped(int)}
+ * pool with a stripe per processor unless replaced with {@link #set(NBTBufferPool)}.
+ * Custom pools only need to implement the abstract methods, anything acquired
+ * is always released exactly once.
+ */
+public abstract class NBTBufferPool {
+    /**
+     * Arrays longer than this are not kept by the built in pools.
+     */
+    public static final int MAX_RETAINED_LENGTH = 1 << 20;
+
+    private static volatile NBTBufferPool pool = striped(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * @return the pool used by the {@link NBTCodec}
+     */
+    public static NBTBufferPool get() {
+        return pool;
+    }
+
+    /**
+     * Replace the pool used by the {@link NBTCodec}.
+     * @param pool the new pool
+     */
+    public static void set(NBTBufferPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("pool cannot be null");
+        NBTBufferPool.pool = pool;
+    }
+
+    /**
+     * Create a pool that does not keep anything, every acquire allocates.
+     * @return the new pool
+     */
+    public static NBTBufferPool unpooled() {
+        return new NBTBufferPool() {
+            @Override
+            public byte[] acquire(int minLength) {
+                return new byte[minLength];
+            }
+
+            @Override
+            public void release(byte[] buffer) {}
+
+            @Override
+            public Deflater acquireDeflater() {
+                return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            }
+
+            @Override
+            public void release(Deflater deflater) {
+                deflater.end();
+            }
+
+            @Override
+            public Inflater acquireInflater() {
+                return new Inflater(true);
+            }
+
+            @Override
+            public void release(Inflater inflater) {
+                inflater.end();
+            }
+        };
+    }
+
+    /**
+     * Create a pool that keeps a separate set of buffers for each thread. This
+     * has no contention at all but keeps up to 4 buffers alive for every thread
+     * that has used the codec.
+     * @return the new pool
+     */
+    public static NBTBufferPool threadLocal() {
+        return new NBTBufferPool() {
+            private final ThreadLocal<Stripe> stripes = new ThreadLocal<Stripe>() {
+                @Override
+                protected Stripe initialValue() {
+                    return new Stripe();
+                }
+            };
+
+            @Override
+            public byte[] acquire(int minLength) {
+                return stripes.get().acquire(minLength);
+            }
+
+            @Override
+            public void release(byte[] buffer) {
+                stripes.get().release(buffer);
+            }
+
+            @Override
+            public Deflater acquireDeflater() {
+                return stripes.get().acquireDeflater();
+            }
+
+            @Override
+            public void release(Deflater deflater) {
+                stripes.get().release(deflater);
+            }
+
+            @Override
+            public Inflater acquireInflater() {
+                return stripes.get().acquireInflater();
+            }
+
+            @Override
+            public void release(Inflater inflater) {
+                stripes.get().release(inflater);
+            }
+        };
+    }
+
+    /**
+     * Create a pool shared by all threads and split into {@code stripes} independently
+     * locked parts. A thread always uses the same stripe so the locks are rarely contended.
+     * @param stripes the number of stripes, usually the number of processors
+     * @return the new pool
+     */
+    public static NBTBufferPool striped(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("stripes must be at least 1");
+        final Stripe[] parts = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++)
+            parts[i] = new Stripe();
+
+        return new NBTBufferPool() {
+            private Stripe stripe() {
+                return parts[(int) (Thread.currentThread().getId() % parts.length)];
+            }
+
+            @Override
+            public byte[] acquire(int minLength) {
+                return stripe().acquire(minLength);
+            }
+
+            @Override
+            public void release(byte[] buffer) {
+                stripe().release(buffer);
+            }
+
+            @Override
+            public Deflater acquireDeflater() {
+                return stripe().acquireDeflater();
+            }
+
+            @Override
+            public void release(Deflater deflater) {
+                stripe().release(deflater);
+            }
+
+            @Override
+            public Inflater acquireInflater() {
+                return stripe().acquireInflater();
+            }
+
+            @Override
+            public void release(Inflater inflater) {
+                stripe().release(inflater);
+            }
+        };
+    }
+
+    /**
+     * Borrow an array. Its contents are undefined.
+     * @param minLength the minimum length of the array
+     * @return an array at least {@code minLength} long
+     */
+    public abstract byte[] acquire(int minLength);
+
+    /**
+     * Return an array borrowed with {@link #acquire(int)}.
+     * @param buffer the array
+     */
+    public abstract void release(byte[] buffer);
+
+    /**
+     * Borrow a deflater for writing raw deflate data with the default compression level.
+     * @return the deflater, ready to use
+     */
+    public abstract Deflater acquireDeflater();
+
+    /**
+     * Return a deflater borrowed with {@link #acquireDeflater()}.
+     * @param deflater the deflater
+     */
+    public abstract void release(Deflater deflater);
+
+    /**
+     * Borrow an inflater for reading raw deflate data.
+     * @return the inflater, ready to use
+     */
+    public abstract Inflater acquireInflater();
+
+    /**
+     * Return an inflater borrowed with {@link #acquireInflater()}.
+     * @param inflater the inflater
+     */
+    public abstract void release(Inflater inflater);
+
+    /**
+     * A small set of pooled objects. A read or write holds at most a few
+     * arrays at once so only a few of each are kept.
+     */
+    private static final class Stripe {
+        private final byte[][] buffers = new byte[4][];
+        private final Deflater[] deflaters = new Deflater[2];
+        private final Inflater[] inflaters = new Inflater[2];
+
+        synchronized byte[] acquire(int minLength) {
+            //Take the smallest array that is long enough
+            int best = -1;
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] != null && buffers[i].length >= minLength && (best < 0 || buffers[i].length < buffers[best].length))
+                    best = i;
+            }
+            if (best < 0)
+                return new byte[Math.max(minLength, Integer.highestOneBit(Math.max(minLength, 64) - 1) << 1)];
+            byte[] buffer = buffers[best];
+            buffers[best] = null;
+            return buffer;
+        }
+
+        synchronized void release(byte[] buffer) {
+            if (buffer.length > MAX_RETAINED_LENGTH)
+                return;
+            //Fill an empty slot or replace the smallest array if this one is bigger
+            int smallest = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] == null) {
+                    buffers[i] = buffer;
+                    return;
+                }
+                if (buffers[i].length < buffers[smallest].length)
+                    smallest = i;
+            }
+            if (buffer.length > buffers[smallest].length)
+                buffers[smallest] = buffer;
+        }
+
+        synchronized Deflater acquireDeflater() {
+            for (int i = 0; i < deflaters.length; i++) {
+                Deflater deflater = deflaters[i];
+                if (deflater != null) {
+                    deflaters[i] = null;
+                    return deflater;
+                }
+            }
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        synchronized void release(Deflater deflater) {
+            deflater.reset();
+            for (int i = 0; i < deflaters.length; i++) {
+                if (deflaters[i] == null) {
+                    deflaters[i] = deflater;
+                    return;
+                }
+            }
+            deflater.end();
+        }
+
+        synchronized Inflater acquireInflater() {
+            for (int i = 0; i < inflaters.length; i++) {
+                Inflater inflater = inflaters[i];
+                if (inflater != null) {
+                    inflaters[i] = null;
+                    return inflater;
+                }
+            }
+            return new Inflater(true);
+        }
+
+        synchronized void release(Inflater inflater) {
+            inflater.reset();
+            for (int i = 0; i < inflaters.length; i++) {
+                if (inflaters[i] == null) {
+                    inflaters[i] = inflater;
+                    return;
+                }
+            }
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,850 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The NBTCodec reads and writes the binary NBT format directly into and out of
+ * {@link ImmutableNBTCompoundTag}s, without going through the server's own tags.
+ * This is the same format used by the {@link TagFactory#getFileIODelegate() file delegate}
+ * and by the server for its data files.
+ * <br>
+ * String values are kept in their encoded form until they are first read, see
+ * {@link ImmutableNBTCompoundTag#stringEquals(String, String)}. Keys are interned
+ * in the {@link NBTKeyDictionary}. Numeric arrays and lists of numbers are converted
+ * to and from big endian in bulk through {@link ByteBuffer} views. Temporary arrays
+ * and the compression state are borrowed from the {@link NBTBufferPool}.
+ * <br>
+ * Compressed data is inflated and deflated a chunk at a time as it is decoded and
+ * encoded, see {@link #inflating(InputStream)} and {@link #deflating(OutputStream)}.
+ */
+public final class NBTCodec {
+    private static final int MAX_DEPTH = 512;
+    private static final byte END = 0;
+    //The number of bytes of numeric data converted at a time when reading
+    static final int CHUNK = 8192;
+    //Magic, deflate, no flags, no modification time, no extra flags, unknown OS
+    static final byte[] GZIP_HEADER = { 0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, (byte) 0xFF };
+
+    private NBTCodec() {}
+
+    /**
+     * Read a gzip compressed tag, such as a player data file. The stream
+     * is closed once the tag is read.
+     * @param in the stream to read from
+     * @return the tag
+     * @throws NBTException if the data cannot be read or is not a valid tag
+     */
+    public static ImmutableNBTCompoundTag readCompressed(InputStream in) {
+        GzipInputStream inflating = new GzipInputStream(NBTBufferPool.get(), in);
+        try (DataInputStream data = new DataInputStream(inflating)) {
+            ImmutableNBTCompoundTag tag = read(data);
+            //Read up to the trailer so that the checksum is verified
+            inflating.skipToEnd();
+            return tag;
+        } catch (IOException e) {
+            throw new NBTException("Error reading compressed tag.", e);
+        }
+    }
+
+    /**
+     * Wrap a gzip compressed stream in one that decompresses it as it is read. The
+     * compressed input and the decompressed output go through {@link NBTBufferPool pooled}
+     * chunks and a pooled {@link Inflater}, closing the stream gives them back and closes
+     * {@code in}. The checksum in the gzip trailer is checked once the end of the data
+     * is read. Only the first gzip member is read.
+     * @param in the compressed stream
+     * @return the decompressed stream
+     */
+    public static InputStream inflating(InputStream in) {
+        return new GzipInputStream(NBTBufferPool.get(), in);
+    }
+
+    /**
+     * Wrap a stream in one that gzip compresses everything written to it. Writes are
+     * collected in a {@link NBTBufferPool pooled} chunk and compressed with a pooled
+     * {@link Deflater}, there is no need to buffer the stream. Closing the stream writes
+     * the gzip trailer, gives the pooled state back and closes {@code out}.
+     * @param out the stream to write the compressed data to
+     * @return the compressing stream
+     */
+    public static OutputStream deflating(OutputStream out) {
+        return new GzipOutputStream(NBTBufferPool.get(), out);
+    }
+
+    /**
+     * Read an uncompressed named compound tag. The name of the root tag is
+     * not kept.
+     * @param in the input to read from
+     * @return the tag
+     * @throws IOException if the input throws one
+     * @throws NBTException if the data is not a valid tag
+     */
+    public static ImmutableNBTCompoundTag read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (type != NBTType.COMPOUND.ID)
+            throw new NBTException("Expected a compound root tag but found " + NBTType.getName(type) + ".");
+        Reader reader = new Reader(in, NBTBufferPool.get());
+        try {
+            //skipBytes may skip less than asked, read the name in full instead
+            reader.fill(in.readUnsignedShort());
+            return reader.readCompound(0);
+        } finally {
+            reader.scratch.release();
+        }
+    }
+
+    /**
+     * Write a gzip compressed tag, such as a player data file. The stream
+     * is closed once the tag is written.
+     * @param tag the tag to write
+     * @param out the stream to write to
+     * @throws NBTException if the data cannot be written
+     */
+    public static void writeCompressed(ImmutableNBTCompoundTag tag, OutputStream out) {
+        NBTStreamWriter writer = NBTStreamWriter.compressed(out);
+        try {
+            writer.entries(tag);
+            writer.close();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    /**
+     * Write an uncompressed named compound tag with an empty name.
+     * @param tag the tag to write
+     * @param out the output to write to
+     * @throws IOException if the output throws one
+     */
+    public static void write(ImmutableNBTCompoundTag tag, DataOutput out) throws IOException {
+        Writer writer = new Writer(NBTBufferPool.get());
+        try {
+            writer.writeRoot(tag);
+            out.write(writer.buf, 0, writer.pos);
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * @return the number of bytes in a number of the given type
+     */
+    private static int width(int type) {
+        return type == 1 ? 1 : type == 2 ? 2 : type == 3 || type == 5 ? 4 : 8;
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth > MAX_DEPTH)
+            throw new NBTException("Tag is nested deeper than " + MAX_DEPTH + " levels.");
+    }
+
+    /**
+     * A growing array borrowed from a {@link NBTBufferPool}.
+     */
+    static class Buffer {
+        final NBTBufferPool pool;
+        byte[] buf;
+        int pos;
+
+        Buffer(NBTBufferPool pool, int initialLength) {
+            this.pool = pool;
+            this.buf = pool.acquire(initialLength);
+        }
+
+        /**
+         * Make room for {@code bytes} more bytes after {@code pos}.
+         */
+        void ensure(int bytes) {
+            if (pos + bytes > buf.length) {
+                byte[] bigger = pool.acquire(Math.max(pos + bytes, buf.length * 2));
+                System.arraycopy(buf, 0, bigger, 0, pos);
+                pool.release(buf);
+                buf = bigger;
+            }
+        }
+
+        void writeIntLE(int v) {
+            ensure(4);
+            buf[pos++] = (byte) v;
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 24);
+        }
+
+        void release() {
+            pool.release(buf);
+            buf = null;
+        }
+    }
+
+    /**
+     * Inflates the first gzip member of a stream a chunk at a time into a pooled window,
+     * see RFC 1952 for the format.
+     */
+    private static final class GzipInputStream extends InputStream {
+        private final NBTBufferPool pool;
+        private final InputStream in;
+        private final Inflater inflater;
+        private final CRC32 crc = new CRC32();
+        private byte[] input;
+        private byte[] window;
+        private int inputPos;
+        private int inputLimit;
+        private int windowPos;
+        private int windowLimit;
+        private long total;
+        private boolean headerRead;
+        private boolean finished;
+
+        GzipInputStream(NBTBufferPool pool, InputStream in) {
+            this.pool = pool;
+            this.in = in;
+            this.inflater = pool.acquireInflater();
+            this.input = pool.acquire(CHUNK);
+            this.window = pool.acquire(CHUNK);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (windowPos == windowLimit && !fill())
+                return -1;
+            return window[windowPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (windowPos == windowLimit && !fill())
+                return -1;
+            int n = Math.min(len, windowLimit - windowPos);
+            System.arraycopy(window, windowPos, b, off, n);
+            windowPos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return windowLimit - windowPos;
+        }
+
+        /**
+         * Read and discard the rest of the data, checking the trailer.
+         */
+        void skipToEnd() throws IOException {
+            windowPos = windowLimit;
+            while (fill())
+                windowPos = windowLimit;
+        }
+
+        /**
+         * Inflate the next chunk into the window.
+         * @return false if the end of the data was reached
+         */
+        private boolean fill() throws IOException {
+            if (window == null)
+                throw new IOException("Stream closed.");
+            if (finished)
+                return false;
+            if (!headerRead) {
+                readHeader();
+                headerRead = true;
+            }
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        if (inputPos == inputLimit && !refill())
+                            throw new EOFException("Unexpected end of gzip data.");
+                        inflater.setInput(input, inputPos, inputLimit - inputPos);
+                        inputPos = inputLimit;
+                    }
+                    int n = inflater.inflate(window, 0, window.length);
+                    if (n > 0) {
+                        crc.update(window, 0, n);
+                        total += n;
+                        windowPos = 0;
+                        windowLimit = n;
+                        return true;
+                    }
+                    if (inflater.needsDictionary())
+                        throw new ZipException("Corrupt gzip data.");
+                }
+                readTrailer();
+                finished = true;
+                return false;
+            } catch (DataFormatException e) {
+                throw new ZipException("Corrupt gzip data. " + e.getMessage());
+            }
+        }
+
+        /**
+         * Read the next chunk of compressed bytes into the input buffer.
+         * @return false if the stream has ended
+         */
+        private boolean refill() throws IOException {
+            int n;
+            do {
+                n = in.read(input, 0, input.length);
+            } while (n == 0);
+            if (n < 0)
+                return false;
+            inputPos = 0;
+            inputLimit = n;
+            return true;
+        }
+
+        private int readInputByte() throws IOException {
+            if (inputPos == inputLimit && !refill())
+                throw new EOFException("Truncated gzip data.");
+            return input[inputPos++] & 0xFF;
+        }
+
+        private int readInputIntLE() throws IOException {
+            return readInputByte() | readInputByte() << 8 | readInputByte() << 16 | readInputByte() << 24;
+        }
+
+        private void readHeader() throws IOException {
+            if (readInputByte() != 0x1F || readInputByte() != 0x8B || readInputByte() != 8)
+                throw new ZipException("Data is not in the gzip format.");
+            int flags = readInputByte();
+            //Modification time, extra flags and OS
+            for (int i = 0; i < 6; i++)
+                readInputByte();
+            //Skip the optional header fields
+            if ((flags & 4) != 0) {
+                int length = readInputByte() | readInputByte() << 8;
+                for (int i = 0; i < length; i++)
+                    readInputByte();
+            }
+            if ((flags & 8) != 0)
+                while (readInputByte() != 0);
+            if ((flags & 16) != 0)
+                while (readInputByte() != 0);
+            if ((flags & 2) != 0) {
+                readInputByte();
+                readInputByte();
+            }
+        }
+
+        private void readTrailer() throws IOException {
+            //The inflater may have been handed bytes past the end of the deflate data
+            inputPos = inputLimit - inflater.getRemaining();
+            if (readInputIntLE() != (int) crc.getValue() || readInputIntLE() != (int) total)
+                throw new ZipException("Corrupt gzip data, the checksum or size does not match.");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (window == null)
+                return;
+            pool.release(input);
+            pool.release(window);
+            pool.release(inflater);
+            input = null;
+            window = null;
+            in.close();
+        }
+    }
+
+    /**
+     * Collects writes in a pooled chunk and deflates it into a gzip member when full.
+     */
+    private static final class GzipOutputStream extends OutputStream {
+        private final NBTBufferPool pool;
+        private final OutputStream out;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer;
+        private byte[] compressed;
+        private int pos;
+        private long total;
+        private boolean headerWritten;
+
+        GzipOutputStream(NBTBufferPool pool, OutputStream out) {
+            this.pool = pool;
+            this.out = out;
+            this.deflater = pool.acquireDeflater();
+            this.buffer = pool.acquire(CHUNK);
+            this.compressed = pool.acquire(CHUNK);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (pos == buffer.length)
+                drain();
+            buffer[pos++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (buffer == null)
+                throw new IOException("Stream closed.");
+            if (len >= buffer.length) {
+                //Too big to be worth copying, deflate it straight away
+                drain();
+                deflate(b, off, len);
+                return;
+            }
+            if (pos + len > buffer.length)
+                drain();
+            System.arraycopy(b, off, buffer, pos, len);
+            pos += len;
+        }
+
+        private void drain() throws IOException {
+            if (buffer == null)
+                throw new IOException("Stream closed.");
+            deflate(buffer, 0, pos);
+            pos = 0;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            if (!headerWritten) {
+                out.write(GZIP_HEADER);
+                headerWritten = true;
+            }
+            if (len == 0)
+                return;
+            crc.update(b, off, len);
+            total += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput())
+                out.write(compressed, 0, deflater.deflate(compressed, 0, compressed.length));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null)
+                return;
+            try {
+                drain();
+                deflater.finish();
+                while (!deflater.finished())
+                    out.write(compressed, 0, deflater.deflate(compressed, 0, compressed.length));
+                int checksum = (int) crc.getValue();
+                out.write(new byte[]{
+                        (byte) checksum, (byte) (checksum >>> 8), (byte) (checksum >>> 16), (byte) (checksum >>> 24),
+                        (byte) total, (byte) (total >>> 8), (byte) (total >>> 16), (byte) (total >>> 24)
+                });
+            } finally {
+                pool.release(buffer);
+                pool.release(compressed);
+                pool.release(deflater);
+                buffer = null;
+                compressed = null;
+                out.close();
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final DataInput in;
+        private final NBTKeyDictionary dictionary = NBTKeyDictionary.global();
+        //Keys and numbers are read into here instead of a new array each
+        final Buffer scratch;
+
+        Reader(DataInput in, NBTBufferPool pool) {
+            this.in = in;
+            this.scratch = new Buffer(pool, CHUNK);
+        }
+
+        /**
+         * Read the next {@code bytes} bytes into the scratch array.
+         * @return a big endian view of the bytes
+         */
+        ByteBuffer fill(int bytes) throws IOException {
+            scratch.ensure(bytes);
+            in.readFully(scratch.buf, 0, bytes);
+            return ByteBuffer.wrap(scratch.buf, 0, bytes);
+        }
+
+        String readKey() throws IOException {
+            int length = in.readUnsignedShort();
+            scratch.ensure(length);
+            in.readFully(scratch.buf, 0, length);
+            return dictionary.intern(ModifiedUTF8.decode(scratch.buf, 0, length));
+        }
+
+        ImmutableNBTCompoundTag readCompound(int depth) throws IOException {
+            checkDepth(depth);
+            String[] keys = new String[8];
+            Object[] values = new Object[8];
+            int size = 0;
+            byte type;
+            while ((type = in.readByte()) != END) {
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                keys[size] = readKey();
+                values[size++] = readPayload(type, depth);
+            }
+            return ImmutableNBTCompoundTag.fromEntries(keys, values, size);
+        }
+
+        ImmutableNBTListTag readList(int depth) throws IOException {
+            checkDepth(depth);
+            byte type = in.readByte();
+            int length = in.readInt();
+            if (length <= 0)
+                return ImmutableNBTListTag.EMPTY;
+            if (type == END)
+                throw new NBTException("List of " + length + " values is missing a value type.");
+
+            if (type >= NBTType.BYTE.ID && type <= NBTType.DOUBLE.ID)
+                return readNumbers(type, length);
+
+            //Grow as the values are read instead of trusting the length up front
+            Object[] values = new Object[Math.min(length, 1024)];
+            for (int i = 0; i < length; i++) {
+                if (i == values.length)
+                    values = Arrays.copyOf(values, Math.min(length, i * 2));
+                values[i] = readPayload(type, depth);
+            }
+            return ImmutableNBTListTag.fromValues(values, length);
+        }
+
+        /**
+         * Read a list of numbers straight into the primitive leaves of an
+         * {@link ImmutableNBTListTag}, without boxing the values.
+         */
+        ImmutableNBTListTag readNumbers(byte type, int length) throws IOException {
+            int width = width(type);
+            int leafSize = ImmutableNBTListTag.LEAF_SIZE;
+            //Grow as the values are read instead of trusting the length up front
+            Object[] leaves = new Object[Math.min((length + leafSize - 1) / leafSize, 1024)];
+            int leafCount = 0;
+            for (int i = 0; i < length; ) {
+                //CHUNK is a multiple of the leaf size in bytes so only the last leaf is partial
+                int n = Math.min(length - i, CHUNK / width);
+                ByteBuffer buffer = fill(n * width);
+                for (int end = i + n; i < end; i += leafSize) {
+                    int count = Math.min(end - i, leafSize);
+                    if (leafCount == leaves.length)
+                        leaves = Arrays.copyOf(leaves, leafCount * 2);
+                    leaves[leafCount++] = readLeaf(buffer, type, count);
+                    buffer.position(buffer.position() + count * width);
+                }
+            }
+            return ImmutableNBTListTag.fromLeaves(type, length, leaves);
+        }
+
+        /**
+         * Copy {@code count} numbers at the position of the buffer into a new array.
+         * The position of the buffer is not moved.
+         */
+        private Object readLeaf(ByteBuffer buffer, byte type, int count) {
+            switch (type) {
+                case 1: {
+                    byte[] leaf = new byte[count];
+                    System.arraycopy(buffer.array(), buffer.arrayOffset() + buffer.position(), leaf, 0, count);
+                    return leaf;
+                }
+                case 2: {
+                    short[] leaf = new short[count];
+                    buffer.asShortBuffer().get(leaf);
+                    return leaf;
+                }
+                case 3: {
+                    int[] leaf = new int[count];
+                    buffer.asIntBuffer().get(leaf);
+                    return leaf;
+                }
+                case 4: {
+                    long[] leaf = new long[count];
+                    buffer.asLongBuffer().get(leaf);
+                    return leaf;
+                }
+                case 5: {
+                    float[] leaf = new float[count];
+                    buffer.asFloatBuffer().get(leaf);
+                    return leaf;
+                }
+                default: {
+                    double[] leaf = new double[count];
+                    buffer.asDoubleBuffer().get(leaf);
+                    return leaf;
+                }
+            }
+        }
+
+        Object readPayload(byte type, int depth) throws IOException {
+            switch (type) {
+                case 1:
+                    return in.readByte();
+                case 2:
+                    return in.readShort();
+                case 3:
+                    return in.readInt();
+                case 4:
+                    return in.readLong();
+                case 5:
+                    return in.readFloat();
+                case 6:
+                    return in.readDouble();
+                case 7: {
+                    byte[] array = new byte[readLength()];
+                    in.readFully(array);
+                    return array;
+                }
+                case 8: {
+                    int length = in.readUnsignedShort();
+                    if (length == 0)
+                        return "";
+                    byte[] encoded = new byte[length];
+                    in.readFully(encoded);
+                    return new Utf8String(encoded);
+                }
+                case 9:
+                    return readList(depth + 1);
+                case 10:
+                    return readCompound(depth + 1);
+                case 11: {
+                    int[] array = new int[readLength()];
+                    for (int off = 0; off < array.length; ) {
+                        int n = Math.min(array.length - off, CHUNK / 4);
+                        fill(n * 4).asIntBuffer().get(array, off, n);
+                        off += n;
+                    }
+                    return array;
+                }
+                case 12: {
+                    long[] array = new long[readLength()];
+                    for (int off = 0; off < array.length; ) {
+                        int n = Math.min(array.length - off, CHUNK / 8);
+                        fill(n * 8).asLongBuffer().get(array, off, n);
+                        off += n;
+                    }
+                    return array;
+                }
+                default:
+                    throw new NBTException("Unknown tag type id " + type + ".");
+            }
+        }
+
+        int readLength() throws IOException {
+            int length = in.readInt();
+            if (length < 0)
+                throw new NBTException("Negative array length " + length + ".");
+            return length;
+        }
+    }
+
+    /**
+     * Encodes a tag into a growing array that is handed to the
+     * output in one write.
+     */
+    static final class Writer extends Buffer {
+
+        Writer(NBTBufferPool pool) {
+            super(pool, CHUNK);
+        }
+
+        void writeByte(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeShort(int v) {
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeBytes(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, pos, b.length);
+            pos += b.length;
+        }
+
+        void writeEncoded(byte[] encoded) {
+            if (encoded.length > ModifiedUTF8.MAX_LENGTH)
+                throw new NBTException("String of " + encoded.length + " encoded bytes is too long to write.");
+            writeShort(encoded.length);
+            writeBytes(encoded);
+        }
+
+        void writeString(String s) {
+            int length = ModifiedUTF8.encodedLength(s);
+            if (length > ModifiedUTF8.MAX_LENGTH)
+                throw new NBTException("String of " + length + " encoded bytes is too long to write.");
+            ensure(2 + length);
+            writeShort(length);
+            pos = ModifiedUTF8.encode(s, buf, pos);
+        }
+
+        void writeRoot(ImmutableNBTCompoundTag tag) {
+            writeByte(NBTType.COMPOUND.ID);
+            writeShort(0);
+            writeCompound(tag);
+        }
+
+        void writeCompound(ImmutableNBTCompoundTag tag) {
+            writeEntries(tag);
+            writeByte(END);
+        }
+
+        void writeEntries(ImmutableNBTCompoundTag tag) {
+            Object[] entries = tag.entries();
+            for (int i = 0; i < entries.length; i += 2) {
+                Object value = entries[i + 1];
+                writeByte(ImmutableTagValues.typeOf(value));
+                writeEncoded(ModifiedUTF8.encodeKey((String) entries[i]));
+                writePayload(value);
+            }
+        }
+
+        void writePayload(Object value) {
+            switch (ImmutableTagValues.typeOf(value)) {
+                case 1:
+                    writeByte((Byte) value);
+                    break;
+                case 2:
+                    writeShort((Short) value);
+                    break;
+                case 3:
+                    writeInt((Integer) value);
+                    break;
+                case 4:
+                    writeLong((Long) value);
+                    break;
+                case 5:
+                    writeInt(Float.floatToIntBits((Float) value));
+                    break;
+                case 6:
+                    writeLong(Double.doubleToLongBits((Double) value));
+                    break;
+                case 7: {
+                    byte[] array = (byte[]) value;
+                    writeInt(array.length);
+                    writeBytes(array);
+                    break;
+                }
+                case 8:
+                    //Still encoded strings are written back out as is
+                    if (value instanceof Utf8String)
+                        writeEncoded(((Utf8String) value).encoded());
+                    else
+                        writeString((String) value);
+                    break;
+                case 9: {
+                    ImmutableNBTListTag list = (ImmutableNBTListTag) value;
+                    writeByte(list.valueType());
+                    writeInt(list.size());
+                    if (list.valueType() >= NBTType.BYTE.ID && list.valueType() <= NBTType.DOUBLE.ID) {
+                        writeNumbers(list);
+                    } else {
+                        for (int i = 0; i < list.size(); i++)
+                            writePayload(list.getRaw(i));
+                    }
+                    break;
+                }
+                case 10:
+                    writeCompound((ImmutableNBTCompoundTag) value);
+                    break;
+                case 11: {
+                    int[] array = (int[]) value;
+                    writeInt(array.length);
+                    ensure(array.length * 4);
+                    ByteBuffer.wrap(buf, pos, array.length * 4).asIntBuffer().put(array);
+                    pos += array.length * 4;
+                    break;
+                }
+                default: {
+                    long[] array = (long[]) value;
+                    writeInt(array.length);
+                    ensure(array.length * 8);
+                    ByteBuffer.wrap(buf, pos, array.length * 8).asLongBuffer().put(array);
+                    pos += array.length * 8;
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Write the primitive leaves of a list of numbers, see {@link Reader#readNumbers(byte, int)}.
+         */
+        void writeNumbers(ImmutableNBTListTag list) {
+            int type = list.valueType();
+            int size = list.size();
+            int width = width(type);
+            int leafSize = ImmutableNBTListTag.LEAF_SIZE;
+            ensure(size * width);
+            for (int start = 0; start < size; start += leafSize) {
+                Object leaf = list.leafFor(start);
+                int count = Math.min(size - start, leafSize);
+                ByteBuffer buffer = ByteBuffer.wrap(buf, pos, count * width);
+                switch (type) {
+                    case 1:
+                        buffer.put((byte[]) leaf, 0, count);
+                        break;
+                    case 2:
+                        buffer.asShortBuffer().put((short[]) leaf, 0, count);
+                        break;
+                    case 3:
+                        buffer.asIntBuffer().put((int[]) leaf, 0, count);
+                        break;
+                    case 4:
+                        buffer.asLongBuffer().put((long[]) leaf, 0, count);
+                        break;
+                    case 5:
+                        buffer.asFloatBuffer().put((float[]) leaf, 0, count);
+                        break;
+                    default:
+                        buffer.asDoubleBuffer().put((double[]) leaf, 0, count);
+                        break;
+                }
+                pos += count * width;
+            }
+        }
+    }
+}
@@ -98,6 +98,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract void put(String key, NBTBaseTag value);
 
+    /**
+     * See {@link #put(String, NBTBaseTag)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void put(NBTKey key, NBTBaseTag value) {
+        put(key.name(), value);
+    }
+
     /**
      * Put all of the mappings from {@code tag} into this tag.
      * @param tag the
@@ -114,6 +123,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract <T> T get(String key, NBTType<T> type);
 
+    /**
+     * See {@link #get(String, NBTType)}.
+     * @param key the reusable key of the mapping
+     * @param type the expected type of the value tag
+     */
+    public <T> T get(NBTKey key, NBTType<T> type) {
+        return get(key.name(), type);
+    }
+
     /**
      * Retrieve a tag from this map at the given key.
      * @param key the key that the desired value is located at.
@@ -122,6 +140,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract NBTBaseTag getTag(String key);
 
+    /**
+     * See {@link #getTag(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public NBTBaseTag getTag(NBTKey key) {
+        return getTag(key.name());
+    }
+
     /**
      * Remove the mapping for the given key.
      * <b>Remove UUID tags with:</b> {@link #removeUUID(String)}.
@@ -129,6 +155,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract void remove(String key);
 
+    /**
+     * See {@link #remove(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public void remove(NBTKey key) {
+        remove(key.name());
+    }
+
     /**
      * Check if the key is a mapping to a non-null value in this map.
      * @param key the key who's existence is being checked
@@ -137,6 +171,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract boolean hasKey(String key);
 
+    /**
+     * See {@link #hasKey(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public boolean hasKey(NBTKey key) {
+        return hasKey(key.name());
+    }
+
     /**
      * Check if the key is a mapping to a non-null value of the given
      * type.
@@ -147,6 +189,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract boolean hasKeyOfType(String key, NBTType type);
 
+    /**
+     * See {@link #hasKeyOfType(String, NBTType)}.
+     * @param key the reusable key of the mapping
+     * @param type the expected type of the value tag
+     */
+    public boolean hasKeyOfType(NBTKey key, NBTType type) {
+        return hasKeyOfType(key.name(), type);
+    }
+
     /**
      * Get the number of tags inside this tag. This only counts tags
      * that are one level deep (doesn't count the size of compound children).
@@ -169,6 +220,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract void putBoolean(String key, boolean value);
 
+    /**
+     * See {@link #putBoolean(String, boolean)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putBoolean(NBTKey key, boolean value) {
+        putBoolean(key.name(), value);
+    }
+
     /**
      * Get a boolean value from this tag at the given key.
      * @param key the key pointing to the boolean to retrieve.
@@ -178,6 +238,28 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
      */
     public abstract boolean getBoolean(String key);
 
+    /**
+     * See {@link #getBoolean(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public boolean getBoolean(NBTKey key) {
+        return getBoolean(key.name());
+    }
+
+    /**
+     * Take a frozen copy of this tag that can be safely read from other threads
+     * while this tag continues to be modified. The nms tag is deep cloned on the
+     * calling thread, this costs as much as any defensive copy. Only building the
+     * {@link ImmutableNBTCompoundTag} from the clone is left to the thread that first
+     * calls {@link NBTSnapshot#get()}. Data that is snapshotted often (rollbacks,
+     * history) should be kept as an {@link ImmutableNBTCompoundTag} to begin with
+     * where each new version shares the unchanged parts of the previous one.
+     * @return a snapshot of this tag
+     */
+    public NBTSnapshot<ImmutableNBTCompoundTag> snapshot() {
+        return NBTSnapshot.of(this);
+    }
+
     @Override
     public NBTType<NBTCompoundTag> type() {
         return NBTType.COMPOUND;
@@ -198,6 +280,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newByteTag(value));
     }
 
+    /**
+     * See {@link #putByte(String, byte)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putByte(NBTKey key, byte value) {
+        putByte(key.name(), value);
+    }
+
     /**
      * Retrieve a byte value from the map. This is equivalent to calling
      * <pre>
@@ -213,6 +304,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getByte(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public byte getByte(NBTKey key) {
+        return getByte(key.name());
+    }
+
     /**
      * Put a short in the map that can be retrieved with {@link #getShort(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -223,6 +322,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newShortTag(value));
     }
 
+    /**
+     * See {@link #putShort(String, short)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putShort(NBTKey key, short value) {
+        putShort(key.name(), value);
+    }
+
     /**
      * Retrieve a short value from the map. This is equivalent to calling
      * <pre>
@@ -238,6 +346,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getShort(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public short getShort(NBTKey key) {
+        return getShort(key.name());
+    }
+
     /**
      * Put an int in the map that can be retrieved with {@link #getInt(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -248,6 +364,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newIntTag(value));
     }
 
+    /**
+     * See {@link #putInt(String, int)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putInt(NBTKey key, int value) {
+        putInt(key.name(), value);
+    }
+
     /**
      * Retrieve a int value from the map. This is equivalent to calling
      * <pre>
@@ -263,6 +388,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getInt(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public int getInt(NBTKey key) {
+        return getInt(key.name());
+    }
+
     /**
      * Put a long in the map that can be retrieved with {@link #getLong(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -273,6 +406,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newLongTag(value));
     }
 
+    /**
+     * See {@link #putLong(String, long)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putLong(NBTKey key, long value) {
+        putLong(key.name(), value);
+    }
+
     /**
      * Retrieve a long value from the map. This is equivalent to calling
      * <pre>
@@ -288,6 +430,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getLong(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public long getLong(NBTKey key) {
+        return getLong(key.name());
+    }
+
     /**
      * Put a float in the map that can be retrieved with {@link #getFloat(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -298,6 +448,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newFloatTag(value));
     }
 
+    /**
+     * See {@link #putFloat(String, float)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putFloat(NBTKey key, float value) {
+        putFloat(key.name(), value);
+    }
+
     /**
      * Retrieve a float value from the map. This is equivalent to calling
      * <pre>
@@ -313,6 +472,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getFloat(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public float getFloat(NBTKey key) {
+        return getFloat(key.name());
+    }
+
     /**
      * Put a double in the map that can be retrieved with {@link #getDouble(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -323,6 +490,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newDoubleTag(value));
     }
 
+    /**
+     * See {@link #putDouble(String, double)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putDouble(NBTKey key, double value) {
+        putDouble(key.name(), value);
+    }
+
     /**
      * Retrieve a double value from the map. This is equivalent to calling
      * <pre>
@@ -338,6 +514,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? 0 : value;
     }
 
+    /**
+     * See {@link #getDouble(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public double getDouble(NBTKey key) {
+        return getDouble(key.name());
+    }
+
     /**
      * Put a byte[] in the map that can be retrieved with {@link #getByteArray(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -348,6 +532,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newByteArrayTag(value));
     }
 
+    /**
+     * See {@link #putByteArray(String, byte[])}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putByteArray(NBTKey key, byte[] value) {
+        putByteArray(key.name(), value);
+    }
+
     /**
      * Retrieve a byte[] value from the map. This is equivalent to calling
      * <pre>
@@ -363,6 +556,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? new byte[0] : value;
     }
 
+    /**
+     * See {@link #getByteArray(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public byte[] getByteArray(NBTKey key) {
+        return getByteArray(key.name());
+    }
+
     /**
      * Put a String in the map that can be retrieved with {@link #getString(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -373,6 +574,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newStringTag(value));
     }
 
+    /**
+     * See {@link #putString(String, String)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putString(NBTKey key, String value) {
+        putString(key.name(), value);
+    }
+
     /**
      * Retrieve a String value from the map. This is equivalent to calling
      * <pre>
@@ -388,6 +598,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? "" : value;
     }
 
+    /**
+     * See {@link #getString(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public String getString(NBTKey key) {
+        return getString(key.name());
+    }
+
     /**
      * Put a list of tags in the map that can be retrieved with {@link #getList(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -398,6 +616,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, value);
     }
 
+    /**
+     * See {@link #putList(String, NBTListTag)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putList(NBTKey key, NBTListTag value) {
+        putList(key.name(), value);
+    }
+
     /**
      * Retrieve a list value from the map. This is equivalent to calling
      * <pre>
@@ -413,6 +640,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? NBTType.LIST.newTag().get() : value;
     }
 
+    /**
+     * See {@link #getList(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public NBTListTag getList(NBTKey key) {
+        return getList(key.name());
+    }
+
     /**
      * Put a compound tag in the map that can be retrieved with {@link #getCompound(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -423,6 +658,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, value);
     }
 
+    /**
+     * See {@link #putCompound(String, NBTCompoundTag)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putCompound(NBTKey key, NBTCompoundTag value) {
+        putCompound(key.name(), value);
+    }
+
     /**
      * Retrieve a compound value from the map. This is equivalent to calling
      * <pre>
@@ -438,6 +682,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? NBTType.COMPOUND.newTag().get() : value;
     }
 
+    /**
+     * See {@link #getCompound(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public NBTCompoundTag getCompound(NBTKey key) {
+        return getCompound(key.name());
+    }
+
     /**
      * Put an int[] in the map that can be retrieved with {@link #getIntArray(String)}.
      * This will overwrite any existing mappings for the given key.
@@ -448,6 +700,15 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key, TagFactory.get().newIntArrayTag(value));
     }
 
+    /**
+     * See {@link #putIntArray(String, int[])}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putIntArray(NBTKey key, int[] value) {
+        putIntArray(key.name(), value);
+    }
+
     /**
      * Retrieve a int[] value from the map. This is equivalent to calling
      * <pre>
@@ -463,6 +724,60 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return value == null ? new int[0] : value;
     }
 
+    /**
+     * See {@link #getIntArray(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public int[] getIntArray(NBTKey key) {
+        return getIntArray(key.name());
+    }
+
+    /**
+     * Put a long[] in the map that can be retrieved with {@link #getLongArray(String)}.
+     * This will overwrite any existing mappings for the given key.
+     * @param key the key at which to store the value
+     * @param value the long[] value to store.
+     * @throws UnsupportedOperationException if the server version does not
+     * support long array tags.
+     */
+    public void putLongArray(String key, long[] value) {
+        put(key, TagFactory.get().newLongArrayTag(value));
+    }
+
+    /**
+     * See {@link #putLongArray(String, long[])}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putLongArray(NBTKey key, long[] value) {
+        putLongArray(key.name(), value);
+    }
+
+    /**
+     * Retrieve a long[] value from the map. This is equivalent to calling
+     * <pre>
+     *     {@link #get(String, NBTType) get}(key, {@link NBTType#LONG_ARRAY})
+     * </pre>
+     * but returning an empty long array instead of null.
+     * @param key the key that the long[] value was put at.
+     * @return the long[] value stored at the given key or an empty long[] if they key does
+     * not exist or points to a value of a different type
+     * @throws UnsupportedOperationException if the server version does not
+     * support long array tags.
+     */
+    public long[] getLongArray(String key) {
+        long[] value = get(key, NBTType.LONG_ARRAY);
+        return value == null ? new long[0] : value;
+    }
+
+    /**
+     * See {@link #getLongArray(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public long[] getLongArray(NBTKey key) {
+        return getLongArray(key.name());
+    }
+
     /**
      * Put a UUID in the map that can be retrieved with {@link #getUUID(String)}.
      * This will overwrite any existing mappings for the given key. This is really
@@ -476,6 +791,16 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         put(key + "Least", TagFactory.get().newLongTag(value.getLeastSignificantBits()));
     }
 
+    /**
+     * See {@link #putUUID(String, UUID)}.
+     * @param key the reusable key of the mapping
+     * @param value the value to store
+     */
+    public void putUUID(UUIDKey key, UUID value) {
+        put(key.most(), TagFactory.get().newLongTag(value.getMostSignificantBits()));
+        put(key.least(), TagFactory.get().newLongTag(value.getLeastSignificantBits()));
+    }
+
     /**
      * Retrieve a UUID value from the map. This combines 2 {@link #getLong(String)}
      * calls to build the UUID. If parts of the serialized UUID are missing this method
@@ -490,6 +815,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return new UUID(getLong(key + "Most"), getLong(key + "Least"));
     }
 
+    /**
+     * See {@link #getUUID(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public UUID getUUID(UUIDKey key) {
+        return new UUID(getLong(key.most()), getLong(key.least()));
+    }
+
     /**
      * Check if there is a UUID stored in this mapping at the given key.
      * @param key the key that the UUID was put into the map with.
@@ -499,6 +832,14 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         return hasKeyOfType(key + "Most", NBTType.LONG) && hasKeyOfType(key + "Least", NBTType.LONG);
     }
 
+    /**
+     * See {@link #hasKeyOfUUID(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public boolean hasKeyOfUUID(UUIDKey key) {
+        return hasKeyOfType(key.most(), NBTType.LONG) && hasKeyOfType(key.least(), NBTType.LONG);
+    }
+
     /**
      * Remove the mapping for a UUID key. UUIDs are stored as 2
      * longs and so removal must remove multiple tags. Regular tag
@@ -509,4 +850,13 @@ public abstract class NBTCompoundTag extends NBTBaseTag<NBTCompoundTag> {
         remove(key + "Most");
         remove(key + "Least");
     }
+
+    /**
+     * See {@link #removeUUID(String)}.
+     * @param key the reusable key of the mapping
+     */
+    public void removeUUID(UUIDKey key) {
+        remove(key.most());
+        remove(key.least());
+    }
 }
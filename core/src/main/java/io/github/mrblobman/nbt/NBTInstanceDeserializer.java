@@ -0,0 +1,44 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A deserializer that can also fill in an existing object instead of creating a new
+ * one. Reusing the same object for data that is read over and over, such as per entity
+ * state read every tick, avoids allocating a new object each time. See
+ * {@link SerializationContext#deserializeInto(NBTBaseTag, Object)}.
+ * @param <T> the type of the deserialized objects this class produces
+ */
+public interface NBTInstanceDeserializer<T> extends NBTDeserializer<T> {
+
+    /**
+     * Deserialize the data into the target. Values that are not in the data
+     * should be left as they are.
+     * @param dataStore the serialized data
+     * @param target the object to fill in
+     * @param context the {@link SerializationContext} that complex deserialization can be delegated
+     *                to. It should also be used to obtain a reference to the appropriate {@link TagFactory}
+     */
+    void deserializeInto(NBTBaseTag dataStore, T target, SerializationContext context);
+}
@@ -0,0 +1,157 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An NBTInterner canonicalizes immutable tags so that equal tags, and equal
+ * subtrees of different tags, share a single instance. This is useful when many
+ * items carry the exact same data such as crate rewards or shop templates.
+ * <br>
+ * Tags are matched by their cached {@link ImmutableNBTCompoundTag#fingerprint() fingerprint}
+ * first so most lookups never compare the trees themselves. The interner only holds
+ * weak references, once a canonical tag is no longer used anywhere else it is freed.
+ * <pre>
+ *     NBTInterner interner = new NBTInterner();
+ *     ImmutableNBTCompoundTag reward = interner.intern(rewardTag);
+ * </pre>
+ * The interner is thread safe.
+ */
+public final class NBTInterner {
+    private final Map<Object, WeakReference<Object>> canonical = new WeakHashMap<>();
+    private long lookups;
+    private long hits;
+
+    /**
+     * Get the canonical instance of a tag. All of the nested compounds and lists
+     * are interned as well.
+     * @param tag the tag to intern
+     * @return the canonical instance equal to {@code tag}, it is {@code tag}
+     * itself if there was no equal tag interned already.
+     */
+    public ImmutableNBTCompoundTag intern(ImmutableNBTCompoundTag tag) {
+        return (ImmutableNBTCompoundTag) internValue(tag);
+    }
+
+    /**
+     * Get the canonical instance of a list. All of the nested compounds and lists
+     * are interned as well.
+     * @param tag the list to intern
+     * @return the canonical instance equal to {@code tag}, it is {@code tag}
+     * itself if there was no equal list interned already.
+     */
+    public ImmutableNBTListTag intern(ImmutableNBTListTag tag) {
+        return (ImmutableNBTListTag) internValue(tag);
+    }
+
+    /**
+     * Take an {@link ImmutableNBTCompoundTag#copyOf(NBTCompoundTag) immutable copy}
+     * of a live tag and intern it.
+     * @param tag the tag to copy
+     * @return the canonical instance of the copy
+     */
+    public ImmutableNBTCompoundTag intern(NBTCompoundTag tag) {
+        return intern(ImmutableNBTCompoundTag.copyOf(tag));
+    }
+
+    private synchronized Object internValue(Object value) {
+        if (!(value instanceof ImmutableNBTCompoundTag) && !(value instanceof ImmutableNBTListTag))
+            return value;
+
+        lookups++;
+        WeakReference<Object> ref = canonical.get(value);
+        Object existing = ref == null ? null : ref.get();
+        if (existing != null) {
+            hits++;
+            return existing;
+        }
+
+        //Not seen before, canonicalize the children so that they can
+        //be shared with other tags
+        if (value instanceof ImmutableNBTCompoundTag) {
+            ImmutableNBTCompoundTag compound = (ImmutableNBTCompoundTag) value;
+            for (String key : compound.keys()) {
+                Object child = compound.getRaw(key);
+                Object canonicalChild = internValue(child);
+                if (canonicalChild != child)
+                    compound = compound.replace(key, canonicalChild);
+            }
+            value = compound;
+        } else {
+            ImmutableNBTListTag list = (ImmutableNBTListTag) value;
+            for (int i = 0; i < list.size(); i++) {
+                Object child = list.getRaw(i);
+                Object canonicalChild = internValue(child);
+                if (canonicalChild != child)
+                    list = list.with(i, canonicalChild);
+            }
+            value = list;
+        }
+
+        canonical.put(value, new WeakReference<>(value));
+        return value;
+    }
+
+    /**
+     * @return the number of canonical tags that are still in use
+     */
+    public synchronized int size() {
+        return canonical.size();
+    }
+
+    /**
+     * @return the number of tags, including nested ones, that have been looked up
+     */
+    public synchronized long lookups() {
+        return lookups;
+    }
+
+    /**
+     * @return the number of lookups that found an existing canonical tag
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Get the fraction of lookups that were deduplicated. A ratio of 0.75 means
+     * that 3 out of 4 interned tags were replaced by an existing instance.
+     * @return the dedupe ratio between 0 and 1
+     */
+    public synchronized double dedupeRatio() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Reset the {@link #lookups()} and {@link #hits()} counters. The interned
+     * tags are kept.
+     */
+    public synchronized void resetStats() {
+        lookups = 0;
+        hits = 0;
+    }
+}
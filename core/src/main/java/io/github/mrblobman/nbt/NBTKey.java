@@ -0,0 +1,83 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * An NBTKey is a reusable name of a mapping in an {@link NBTCompoundTag}.
+ * The name is interned in the {@link NBTKeyDictionary} and its hash is
+ * computed once when the key is created so that lookups in hot code paths
+ * reuse the same String instance instead of building and hashing a new one
+ * each time.
+ * <br>
+ * Keys are meant to be created once and stored in a constant:
+ * <pre>
+ *     private static final NBTKey LEVEL = NBTKey.of("Level");
+ *     ...
+ *     int level = tag.getInt(LEVEL);
+ * </pre>
+ * All of the {@link NBTCompoundTag} accessors have an overload accepting an NBTKey.
+ */
+public final class NBTKey {
+    private final String name;
+    private final int hash;
+
+    private NBTKey(String name) {
+        this.name = name;
+        this.hash = name.hashCode();
+    }
+
+    /**
+     * Create a key for the given name.
+     * @param name the name of the mapping
+     * @return the key for the mapping
+     */
+    public static NBTKey of(String name) {
+        return new NBTKey(NBTKeyDictionary.global().intern(name));
+    }
+
+    /**
+     * @return the name of the mapping this key refers to
+     */
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof NBTKey)) return false;
+        NBTKey other = (NBTKey) obj;
+        return hash == other.hash && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
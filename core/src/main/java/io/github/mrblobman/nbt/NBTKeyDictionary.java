@@ -0,0 +1,177 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The NBTKeyDictionary interns the keys of compound tags so that the same few hundred
+ * key names ({@code id}, {@code Count}, {@code tag}, {@code display}, ...) are each stored
+ * as a single String instance instead of one per tag.
+ * <br>
+ * The {@link #global() global} dictionary is used by the compound wrappers when putting
+ * a mapping, by {@link NBTKey} and by the immutable tags. It is bounded, once it holds
+ * {@link #DEFAULT_MAX_SIZE} keys new keys are passed through unchanged so that plugins
+ * generating unique keys cannot grow it without limit.
+ */
+public final class NBTKeyDictionary {
+    /**
+     * The maximum number of distinct keys held by the {@link #global() global} dictionary.
+     */
+    public static final int DEFAULT_MAX_SIZE = 8192;
+
+    private static final NBTKeyDictionary GLOBAL = new NBTKeyDictionary(DEFAULT_MAX_SIZE);
+
+    private final ConcurrentMap<String, String> keys;
+    private final int maxSize;
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * Create a new dictionary. Most callers should use the {@link #global()} one.
+     * @param maxSize the maximum number of distinct keys to hold
+     */
+    public NBTKeyDictionary(int maxSize) {
+        this.keys = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the dictionary shared by all of the compound tags
+     */
+    public static NBTKeyDictionary global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Get the canonical instance of the key.
+     * @param key the key to intern
+     * @return the canonical String equal to {@code key}, or {@code key} itself if
+     * it was not seen before or the dictionary is full
+     */
+    public String intern(String key) {
+        //Keys passed in are usually already canonical, that path is just the lookup
+        String existing = keys.get(key);
+        if (existing == key)
+            return key;
+        if (existing == null) {
+            misses.incrementAndGet();
+            if (keys.size() >= maxSize)
+                return key;
+            existing = keys.putIfAbsent(key, key);
+            if (existing == null)
+                return key;
+        }
+
+        if (existing != key) {
+            deduplicated.incrementAndGet();
+            savedBytes.addAndGet(estimateSize(key));
+        }
+        return existing;
+    }
+
+    /**
+     * Estimate the retained size of a String. An object header and hash field
+     * for the String plus a header and 2 bytes per char for its backing array.
+     */
+    private static long estimateSize(String key) {
+        return 24 + ((16 + 2L * key.length() + 7) & ~7);
+    }
+
+    /**
+     * Replace the keys of an existing tag, and all of the compounds nested
+     * in it, with their canonical instances. This is useful for tags that were
+     * decoded by the server, such as those read by the
+     * {@link TagFactory#getFileIODelegate() file delegate}, and are kept in memory.
+     * @param tag the tag who's keys to intern
+     */
+    public void internKeys(NBTCompoundTag tag) {
+        for (String key : new ArrayList<>(tag.keys())) {
+            NBTBaseTag value = tag.getTag(key);
+            String canonical = intern(key);
+            if (canonical != key) {
+                tag.remove(key);
+                tag.put(canonical, value);
+            }
+            internKeys(value);
+        }
+    }
+
+    private void internKeys(NBTBaseTag tag) {
+        if (tag.type().isCompound()) {
+            internKeys((NBTCompoundTag) tag);
+        } else if (tag.type().isList()) {
+            NBTListTag list = (NBTListTag) tag;
+            if (list.valueType() == NBTType.COMPOUND.ID || list.valueType() == NBTType.LIST.ID) {
+                for (int i = 0; i < list.size(); i++)
+                    internKeys(list.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct keys in this dictionary
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return the maximum number of distinct keys this dictionary holds
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Calls that find the canonical instance itself are not counted so that
+     * interning stays a single lookup.
+     * @return the number of calls to {@link #intern(String)} with a key that was
+     * not in the dictionary
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of times a duplicate String was replaced by the
+     * canonical instance
+     */
+    public long deduplicated() {
+        return deduplicated.get();
+    }
+
+    /**
+     * Get an estimate of the memory saved by replacing duplicate Strings. This
+     * assumes each replaced String would otherwise have been retained.
+     * @return the estimated number of bytes saved
+     */
+    public long savedBytes() {
+        return savedBytes.get();
+    }
+}
@@ -56,6 +56,11 @@ public abstract class NBTListTag extends NBTBaseTag<NBTListTag> {
         }
     }
 
+    private void checkReadType(NBTType type) {
+        if (valueType != type.ID && !isEmpty())
+            throw new ClassCastException("Cannot read a list of " + NBTType.getName(valueType) + " as " + NBTType.getName(type.ID));
+    }
+
     /**
      * Get the number of tags in this list
      * @return the size of the list
@@ -120,4 +125,272 @@ public abstract class NBTListTag extends NBTBaseTag<NBTListTag> {
      *                                   the list.
      */
     public abstract NBTBaseTag get(int pos);
+
+    /**
+     * Take a frozen copy of this list that can be safely read from other threads
+     * while this list continues to be modified. See {@link NBTCompoundTag#snapshot()}.
+     * @return a snapshot of this list
+     */
+    public NBTSnapshot<ImmutableNBTListTag> snapshot() {
+        return NBTSnapshot.of(this);
+    }
+
+    protected abstract double getDoubleInternal(int pos);
+
+    protected abstract void setDoubleInternal(int pos, double value);
+
+    protected abstract void addDoubleInternal(double value);
+
+    protected abstract int getIntInternal(int pos);
+
+    protected abstract void setIntInternal(int pos, int value);
+
+    protected abstract void addIntInternal(int value);
+
+    /**
+     * Copy the values of this list of {@link NBTType#DOUBLE doubles} into a
+     * new array. The values are read straight from the nms tags without
+     * creating a wrapper for each element.
+     * @return a new array containing each value in this list in order
+     * @throws ClassCastException if the list is not empty and is not a list
+     *                            of doubles.
+     */
+    public double[] asDoubleArray() {
+        checkReadType(NBTType.DOUBLE);
+        double[] values = new double[size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getDoubleInternal(i);
+        return values;
+    }
+
+    /**
+     * Copy the values of this list of {@link NBTType#INT ints} into a
+     * new array. The values are read straight from the nms tags without
+     * creating a wrapper for each element.
+     * @return a new array containing each value in this list in order
+     * @throws ClassCastException if the list is not empty and is not a list
+     *                            of ints.
+     */
+    public int[] asIntArray() {
+        checkReadType(NBTType.INT);
+        int[] values = new int[size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getIntInternal(i);
+        return values;
+    }
+
+    /**
+     * Get a live view of this list as a list of primitive doubles. Changes
+     * made through the view are written directly to this list and vice versa.
+     * @return the view over this list
+     * @throws ClassCastException if the list is not empty and is not a list
+     *                            of doubles.
+     */
+    public DoubleView asDoubleView() {
+        checkReadType(NBTType.DOUBLE);
+        return new DoubleView(this);
+    }
+
+    /**
+     * Get a live view of this list as a list of primitive ints. Changes
+     * made through the view are written directly to this list and vice versa.
+     * @return the view over this list
+     * @throws ClassCastException if the list is not empty and is not a list
+     *                            of ints.
+     */
+    public IntView asIntView() {
+        checkReadType(NBTType.INT);
+        return new IntView(this);
+    }
+
+    /**
+     * Append all of the {@code values} to the end of this list in order.
+     * @param values the values to add
+     * @throws ClassCastException if the list contains one or more tags and
+     *                            is not a list of doubles.
+     */
+    public void addAll(double[] values) {
+        checkAndSetType(NBTType.DOUBLE);
+        for (double value : values)
+            addDoubleInternal(value);
+    }
+
+    /**
+     * Append all of the {@code values} to the end of this list in order.
+     * @param values the values to add
+     * @throws ClassCastException if the list contains one or more tags and
+     *                            is not a list of ints.
+     */
+    public void addAll(int[] values) {
+        checkAndSetType(NBTType.INT);
+        for (int value : values)
+            addIntInternal(value);
+    }
+
+    /**
+     * Replace the contents of this list with the {@code values}. Existing
+     * positions are overwritten in place, the list is then grown or shrunk to
+     * match the length of {@code values}. This is useful for lists such as an
+     * entity's {@code Pos} and {@code Motion} that are rewritten as a whole.
+     * @param values the new values of this list
+     * @throws ClassCastException if the list contains one or more tags and
+     *                            is not a list of doubles.
+     */
+    public void setAll(double[] values) {
+        checkAndSetType(NBTType.DOUBLE);
+        int size = size();
+        int i = 0;
+        for (; i < values.length && i < size; i++)
+            setDoubleInternal(i, values[i]);
+        for (; i < values.length; i++)
+            addDoubleInternal(values[i]);
+        while (size > values.length)
+            remove(--size);
+    }
+
+    /**
+     * Replace the contents of this list with the {@code values}. Existing
+     * positions are overwritten in place, the list is then grown or shrunk to
+     * match the length of {@code values}.
+     * @param values the new values of this list
+     * @throws ClassCastException if the list contains one or more tags and
+     *                            is not a list of ints.
+     */
+    public void setAll(int[] values) {
+        checkAndSetType(NBTType.INT);
+        int size = size();
+        int i = 0;
+        for (; i < values.length && i < size; i++)
+            setIntInternal(i, values[i]);
+        for (; i < values.length; i++)
+            addIntInternal(values[i]);
+        while (size > values.length)
+            remove(--size);
+    }
+
+    /**
+     * A view of an {@link NBTListTag} of {@link NBTType#DOUBLE doubles} that
+     * reads and writes primitive values without wrapping each element.
+     * See {@link NBTListTag#asDoubleView()}.
+     */
+    public static final class DoubleView {
+        private final NBTListTag list;
+
+        private DoubleView(NBTListTag list) {
+            this.list = list;
+        }
+
+        /**
+         * @return the number of values in the backing list
+         */
+        public int size() {
+            return list.size();
+        }
+
+        /**
+         * Get the value at index {@code pos}.
+         * @param pos the index of the value to get
+         * @return the value at index {@code pos}
+         * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+         *                                   the list.
+         */
+        public double get(int pos) {
+            if (pos < 0 || pos >= list.size())
+                throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + list.size());
+            return list.getDoubleInternal(pos);
+        }
+
+        /**
+         * Replace the value at index {@code pos}.
+         * @param pos the index of the value to set
+         * @param value the new value
+         * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+         *                                   the list.
+         */
+        public void set(int pos, double value) {
+            if (pos < 0 || pos >= list.size())
+                throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + list.size());
+            list.checkAndSetType(NBTType.DOUBLE);
+            list.setDoubleInternal(pos, value);
+        }
+
+        /**
+         * Append a value to the end of the backing list.
+         * @param value the value to add
+         */
+        public void add(double value) {
+            list.checkAndSetType(NBTType.DOUBLE);
+            list.addDoubleInternal(value);
+        }
+
+        /**
+         * @return a copy of the values in the backing list.
+         */
+        public double[] toArray() {
+            return list.asDoubleArray();
+        }
+    }
+
+    /**
+     * A view of an {@link NBTListTag} of {@link NBTType#INT ints} that
+     * reads and writes primitive values without wrapping each element.
+     * See {@link NBTListTag#asIntView()}.
+     */
+    public static final class IntView {
+        private final NBTListTag list;
+
+        private IntView(NBTListTag list) {
+            this.list = list;
+        }
+
+        /**
+         * @return the number of values in the backing list
+         */
+        public int size() {
+            return list.size();
+        }
+
+        /**
+         * Get the value at index {@code pos}.
+         * @param pos the index of the value to get
+         * @return the value at index {@code pos}
+         * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+         *                                   the list.
+         */
+        public int get(int pos) {
+            if (pos < 0 || pos >= list.size())
+                throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + list.size());
+            return list.getIntInternal(pos);
+        }
+
+        /**
+         * Replace the value at index {@code pos}.
+         * @param pos the index of the value to set
+         * @param value the new value
+         * @throws IndexOutOfBoundsException if the {@code pos} is not an index in
+         *                                   the list.
+         */
+        public void set(int pos, int value) {
+            if (pos < 0 || pos >= list.size())
+                throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + list.size());
+            list.checkAndSetType(NBTType.INT);
+            list.setIntInternal(pos, value);
+        }
+
+        /**
+         * Append a value to the end of the backing list.
+         * @param value the value to add
+         */
+        public void add(int value) {
+            list.checkAndSetType(NBTType.INT);
+            list.addIntInternal(value);
+        }
+
+        /**
+         * @return a copy of the values in the backing list.
+         */
+        public int[] toArray() {
+            return list.asIntArray();
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * An NBTLongArrayTag wraps a long[]. The array returned by {@link #get()} is the
+ * live storage of the nms tag, {@link #view()}, {@link #copy()} and
+ * {@link #update(int, long[])} make the intended ownership explicit so that
+ * large arrays can be read and patched without copying the whole array.
+ */
+public abstract class NBTLongArrayTag extends NBTBaseTag<long[]> {
+
+    protected NBTLongArrayTag(Object handle) {
+        super(handle);
+    }
+
+    @Override
+    public NBTType<long[]> type() {
+        return NBTType.LONG_ARRAY;
+    }
+
+    /**
+     * Get the backing array of this tag. This is <b>not</b> a copy, changes
+     * to the returned array are changes to the tag. See {@link #copy()}
+     * for a safe copy and {@link #view()} for read only access.
+     * @return the live array backing this tag
+     */
+    @Override
+    public abstract long[] get();
+
+    /**
+     * @return the number of longs in this tag
+     */
+    public int length() {
+        return get().length;
+    }
+
+    /**
+     * Get a read only view over the live storage of this tag. No data is
+     * copied and changes made to the tag are visible in the view.
+     * @return a read only buffer backed by this tag's array
+     */
+    public LongBuffer view() {
+        return LongBuffer.wrap(get()).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a copy of the array in this tag that may be freely modified
+     */
+    public long[] copy() {
+        long[] value = get();
+        return Arrays.copyOf(value, value.length);
+    }
+
+    /**
+     * Overwrite the longs starting at {@code offset} with the contents of
+     * {@code src}. The array is patched in place.
+     * @param offset the index in this tag of the first long to overwrite
+     * @param src the longs to write
+     * @throws IndexOutOfBoundsException if {@code src} does not fit in this tag
+     *                                   starting at {@code offset}
+     */
+    public void update(int offset, long[] src) {
+        update(offset, src, 0, src.length);
+    }
+
+    /**
+     * Overwrite the longs starting at {@code offset} with {@code length} longs
+     * from {@code src} starting at {@code srcOffset}. The array is patched in place.
+     * @param offset the index in this tag of the first long to overwrite
+     * @param src the source of the longs to write
+     * @param srcOffset the index in {@code src} of the first long to write
+     * @param length the number of longs to write
+     * @throws IndexOutOfBoundsException if the range does not fit in this tag
+     *                                   or in {@code src}
+     */
+    public void update(int offset, long[] src, int srcOffset, int length) {
+        long[] value = get();
+        if (offset < 0 || length < 0 || offset + length > value.length)
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of bounds for length " + value.length);
+        System.arraycopy(src, srcOffset, value, offset, length);
+        invalidateFingerprint();
+    }
+}
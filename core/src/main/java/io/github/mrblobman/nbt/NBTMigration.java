@@ -0,0 +1,53 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A migration upgrades the serialized data of a type from one version to a newer
+ * one, see {@link NBTson.NBTsonBuilder#registerMigration(Class, int, int, NBTMigration)}.
+ * The version of a versioned type is stored in its compound at {@link #DATA_VERSION}.
+ * Data without a version is at version 0.
+ * <pre>
+ *     //Version 1 renamed "owner" to "leader"
+ *     builder.registerMigration(Guild.class, 0, 1, new NBTMigration() {
+ *         public void migrate(NBTCompoundTag data) {
+ *             data.put("leader", data.getTag("owner"));
+ *             data.remove("owner");
+ *         }
+ *     });
+ * </pre>
+ */
+public interface NBTMigration {
+    /**
+     * The key that the version of the data is stored at.
+     */
+    NBTKey DATA_VERSION = NBTKey.of("DataVersion");
+
+    /**
+     * Upgrade the data in place. The {@link #DATA_VERSION} is updated
+     * after all of the migrations have run.
+     * @param data the serialized data of the versioned type
+     */
+    void migrate(NBTCompoundTag data);
+}
@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A frozen copy of a live tag taken with {@link NBTCompoundTag#snapshot()} or
+ * {@link NBTListTag#snapshot()}. Taking the snapshot makes a full deep clone of the
+ * nms tag on the calling thread, the immutable tag is then built from the clone by the
+ * first call to {@link #get()}, usually on the thread that reads the snapshot. The clone
+ * is not copy on write: nms tags are changed by the server directly so there is no way
+ * to find out which parts of the live tag were changed after the snapshot was taken.
+ * <br>
+ * Nothing else holds a reference to the clone so the snapshot is safe to hand to
+ * other threads while the live tag continues to be modified. Data that is snapshotted
+ * often should be kept in an {@link ImmutableNBTCompoundTag} instead, where every
+ * version is a snapshot that shares the unchanged parts of the previous one.
+ * <pre>
+ *     final NBTSnapshot&lt;ImmutableNBTCompoundTag&gt; snapshot = tag.snapshot();
+ *     executor.execute(new Runnable() {
+ *         public void run() {
+ *             save(snapshot.get());
+ *         }
+ *     });
+ * </pre>
+ * @param <T> the type of the immutable tag, {@link ImmutableNBTCompoundTag} or
+ *            {@link ImmutableNBTListTag}
+ */
+public abstract class NBTSnapshot<T> {
+    //Only read and cleared while holding the lock in get()
+    private Object handle;
+    private volatile T value;
+
+    NBTSnapshot(Object handle) {
+        this.handle = handle;
+    }
+
+    static NBTSnapshot<ImmutableNBTCompoundTag> of(NBTCompoundTag tag) {
+        return new NBTSnapshot<ImmutableNBTCompoundTag>(TagFactory.get().cloneHandle(tag.getHandle())) {
+            @Override
+            ImmutableNBTCompoundTag freeze(Object handle) {
+                return ImmutableNBTCompoundTag.copyOf(TagFactory.get().wrapCompoundTag(handle));
+            }
+        };
+    }
+
+    static NBTSnapshot<ImmutableNBTListTag> of(NBTListTag tag) {
+        return new NBTSnapshot<ImmutableNBTListTag>(TagFactory.get().cloneHandle(tag.getHandle())) {
+            @Override
+            ImmutableNBTListTag freeze(Object handle) {
+                return ImmutableNBTListTag.copyOf(TagFactory.get().wrapListTag(handle));
+            }
+        };
+    }
+
+    abstract T freeze(Object handle);
+
+    /**
+     * Get the immutable tag. It is built by the first call, after which the clone
+     * of the nms tag is dropped and every call returns the same instance.
+     * @return the contents of the live tag at the time the snapshot was taken
+     */
+    public T get() {
+        T value = this.value;
+        if (value == null) {
+            synchronized (this) {
+                value = this.value;
+                if (value == null) {
+                    value = freeze(handle);
+                    this.value = value;
+                    handle = null;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the immutable tag has been built by {@link #get()}
+     */
+    public boolean isFrozen() {
+        return value != null;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A stream serializer writes the passed in object of this classes generic type
+ * straight into an {@link NBTStreamWriter} instead of building an NBTTag first. It
+ * is used when {@link NBTson} writes to a stream or byte array, types without one
+ * fall back to their {@link NBTSerializer}.
+ * @param <T> the type of the objects this class serializes
+ */
+public interface NBTStreamSerializer<T> {
+
+    /**
+     * Write the item as exactly one value. The name of the value, if it is
+     * in a compound, has already been written.
+     * @param item the object to serialize
+     * @param out the writer to write the value to
+     * @param context the {@link SerializationContext} that complex serialization can be delegated
+     *                to with {@link SerializationContext#serialize(Object, NBTStreamWriter)}
+     */
+    void serialize(T item, NBTStreamWriter out, SerializationContext context);
+}
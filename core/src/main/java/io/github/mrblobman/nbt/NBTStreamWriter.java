@@ -0,0 +1,466 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An NBTStreamWriter encodes a tag in the binary NBT format as it is described, without
+ * building the tag first. It is what {@link NBTStreamSerializer}s write to, and it lets
+ * {@link NBTson} save large object graphs in a single pass. The encoded bytes are handed
+ * to the stream every few kilobytes so only a small window of the output is ever held
+ * in memory.
+ * <br>
+ * The writer starts inside the unnamed root compound. Values in a compound are preceded
+ * by their name, values in a list are not. Lists declare their size up front and take
+ * the type of their first element:
+ * <pre>
+ *     try (NBTStreamWriter out = NBTStreamWriter.compressed(new FileOutputStream(file))) {
+ *         out.name("Name").value("Steve");
+ *         out.name("Pos").beginList(3).value(x).value(y).value(z).endList();
+ *         out.name("Inventory").beginCompound();
+ *         out.name("Size").value(27);
+ *         out.endCompound();
+ *     }
+ * </pre>
+ * Closing the writer ends the root compound and closes the stream. The output can be
+ * read back with {@link NBTCodec#readCompressed(java.io.InputStream)} or
+ * {@link NBTCodec#read(java.io.DataInput)}. A writer is not thread safe.
+ */
+public final class NBTStreamWriter implements Closeable {
+    private static final int MAX_DEPTH = 512;
+
+    private final NBTBufferPool pool;
+    private final OutputStream out;
+    private final NBTCodec.Writer writer;
+    //Only set for compressed output
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final byte[] compressed;
+    private boolean headerWritten;
+    private int length;
+
+    //The open compounds and lists, the root compound is at depth 0
+    private int depth;
+    private boolean[] lists = new boolean[16];
+    private int[] remaining = new int[16];
+    private byte[] elementTypes = new byte[16];
+    //Where the element type of the innermost list is written, it is filled in by the first element
+    private int typePos;
+    private String name;
+    //The version to stamp the next compound with, or -1
+    private int pendingVersion = -1;
+    private boolean done;
+
+    private NBTStreamWriter(OutputStream out, boolean compress) {
+        this.pool = NBTBufferPool.get();
+        this.out = out;
+        this.writer = new NBTCodec.Writer(pool);
+        this.deflater = compress ? pool.acquireDeflater() : null;
+        this.crc = compress ? new CRC32() : null;
+        this.compressed = compress ? pool.acquire(NBTCodec.CHUNK) : null;
+        writer.writeByte(NBTType.COMPOUND.ID);
+        writer.writeShort(0);
+    }
+
+    /**
+     * Create a writer for a gzip compressed tag, such as a player data file.
+     * @param out the stream to write to
+     * @return the new writer
+     */
+    public static NBTStreamWriter compressed(OutputStream out) {
+        return new NBTStreamWriter(out, true);
+    }
+
+    /**
+     * Create a writer for an uncompressed named compound tag with an empty name.
+     * @param out the stream to write to
+     * @return the new writer
+     */
+    public static NBTStreamWriter uncompressed(OutputStream out) {
+        return new NBTStreamWriter(out, false);
+    }
+
+    /**
+     * Set the name of the next value in the current compound.
+     * @param name the name of the value
+     * @return this writer
+     * @throws IllegalStateException if the writer is in a list or
+     * a name was set without a value
+     */
+    public NBTStreamWriter name(String name) {
+        checkOpen();
+        if (lists[depth])
+            throw new IllegalStateException("Values in a list do not have a name.");
+        if (this.name != null)
+            throw new IllegalStateException("Expected a value for " + this.name + ".");
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * See {@link #name(String)}.
+     * @param key the reusable key of the value
+     * @return this writer
+     */
+    public NBTStreamWriter name(NBTKey key) {
+        return name(key.name());
+    }
+
+    public NBTStreamWriter value(byte value) {
+        beforeValue(NBTType.BYTE.ID);
+        writer.writeByte(value);
+        return afterValue();
+    }
+
+    /**
+     * Write a boolean as a byte tag of 1 or 0, like {@link NBTCompoundTag#putBoolean(String, boolean)}.
+     * @param value the value
+     * @return this writer
+     */
+    public NBTStreamWriter value(boolean value) {
+        return value(value ? (byte) 1 : (byte) 0);
+    }
+
+    public NBTStreamWriter value(short value) {
+        beforeValue(NBTType.SHORT.ID);
+        writer.writeShort(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(int value) {
+        beforeValue(NBTType.INT.ID);
+        writer.writeInt(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(long value) {
+        beforeValue(NBTType.LONG.ID);
+        writer.writeLong(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(float value) {
+        beforeValue(NBTType.FLOAT.ID);
+        writer.writeInt(Float.floatToIntBits(value));
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(double value) {
+        beforeValue(NBTType.DOUBLE.ID);
+        writer.writeLong(Double.doubleToLongBits(value));
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(String value) {
+        beforeValue(NBTType.STRING.ID);
+        writer.writeString(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(byte[] value) {
+        beforeValue(NBTType.BYTE_ARRAY.ID);
+        writer.writePayload(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(int[] value) {
+        beforeValue(NBTType.INT_ARRAY.ID);
+        writer.writePayload(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(long[] value) {
+        beforeValue(NBTType.LONG_ARRAY.ID);
+        writer.writePayload(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(ImmutableNBTCompoundTag value) {
+        beforeValue(NBTType.COMPOUND.ID);
+        writer.writeCompound(value);
+        return afterValue();
+    }
+
+    public NBTStreamWriter value(ImmutableNBTListTag value) {
+        beforeValue(NBTType.LIST.ID);
+        writer.writePayload(value);
+        return afterValue();
+    }
+
+    /**
+     * Write a live tag, including all of its children.
+     * @param tag the tag to write
+     * @return this writer
+     */
+    public NBTStreamWriter value(NBTBaseTag tag) {
+        switch (tag.type().ID) {
+            case 1:
+                return value((byte) (Byte) tag.get());
+            case 2:
+                return value((short) (Short) tag.get());
+            case 3:
+                return value((int) (Integer) tag.get());
+            case 4:
+                return value((long) (Long) tag.get());
+            case 5:
+                return value((float) (Float) tag.get());
+            case 6:
+                return value((double) (Double) tag.get());
+            case 7:
+                return value((byte[]) tag.get());
+            case 8:
+                return value((String) tag.get());
+            case 9: {
+                NBTListTag list = (NBTListTag) tag;
+                int size = list.size();
+                beginList(size);
+                for (int i = 0; i < size; i++)
+                    value(list.get(i));
+                return endList();
+            }
+            case 10: {
+                NBTCompoundTag compound = (NBTCompoundTag) tag;
+                beginCompound();
+                for (String key : compound.keys())
+                    name(key).value(compound.getTag(key));
+                return endCompound();
+            }
+            case 11:
+                return value((int[]) tag.get());
+            default:
+                return value((long[]) tag.get());
+        }
+    }
+
+    /**
+     * Start a compound value. Write its named values and then call {@link #endCompound()}.
+     * @return this writer
+     */
+    public NBTStreamWriter beginCompound() {
+        int version = pendingVersion;
+        beforeValue(NBTType.COMPOUND.ID);
+        push(false, 0);
+        if (version >= 0)
+            name(NBTMigration.DATA_VERSION).value(version);
+        return afterValue();
+    }
+
+    /**
+     * End the compound started by the last unfinished {@link #beginCompound()}.
+     * @return this writer
+     * @throws IllegalStateException if the innermost open value is not a compound
+     */
+    public NBTStreamWriter endCompound() {
+        checkOpen();
+        if (depth == 0 || lists[depth])
+            throw new IllegalStateException("There is no compound to end.");
+        if (name != null)
+            throw new IllegalStateException("Expected a value for " + name + ".");
+        writer.writeByte(0);
+        depth--;
+        return afterValue();
+    }
+
+    /**
+     * Start a list value. Write exactly {@code size} values of the same type
+     * and then call {@link #endList()}.
+     * @param size the number of elements in the list
+     * @return this writer
+     */
+    public NBTStreamWriter beginList(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative list size " + size + ".");
+        beforeValue(NBTType.LIST.ID);
+        typePos = writer.pos;
+        writer.writeByte(0);
+        writer.writeInt(size);
+        push(true, size);
+        return afterValue();
+    }
+
+    /**
+     * End the list started by the last unfinished {@link #beginList(int)}.
+     * @return this writer
+     * @throws IllegalStateException if the innermost open value is not a list or
+     * the list is missing elements
+     */
+    public NBTStreamWriter endList() {
+        checkOpen();
+        if (!lists[depth])
+            throw new IllegalStateException("There is no list to end.");
+        if (remaining[depth] != 0)
+            throw new IllegalStateException("The list is missing " + remaining[depth] + " of its elements.");
+        depth--;
+        return afterValue();
+    }
+
+    /**
+     * Write the {@link NBTMigration#DATA_VERSION} as the first entry of the next value
+     * if it is a compound.
+     */
+    void versionNextCompound(int version) {
+        pendingVersion = version;
+    }
+
+    /**
+     * Write all of the entries of the tag into the current compound.
+     */
+    void entries(ImmutableNBTCompoundTag tag) {
+        checkOpen();
+        if (lists[depth] || name != null)
+            throw new IllegalStateException("Entries can only be written into a compound.");
+        writer.writeEntries(tag);
+        afterValue();
+    }
+
+    /**
+     * End the root compound, write everything that is left and close the stream.
+     * @throws IllegalStateException if there are compounds or lists that were not ended
+     * @throws NBTException if the data cannot be written
+     */
+    @Override
+    public void close() {
+        if (done)
+            return;
+        if (depth != 0 || name != null) {
+            abort();
+            throw new IllegalStateException("Cannot close the writer in the middle of a value.");
+        }
+        writer.writeByte(0);
+        drain();
+        try {
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished())
+                    out.write(compressed, 0, deflater.deflate(compressed, 0, compressed.length));
+                writer.writeIntLE((int) crc.getValue());
+                writer.writeIntLE(length);
+                out.write(writer.buf, 0, writer.pos);
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new NBTException("Error writing tag.", e);
+        } finally {
+            abort();
+        }
+    }
+
+    /**
+     * Give back the pooled buffers and close the stream without finishing the
+     * tag. Does nothing if the writer is already closed.
+     */
+    void abort() {
+        if (done)
+            return;
+        done = true;
+        writer.release();
+        if (deflater != null) {
+            pool.release(deflater);
+            pool.release(compressed);
+        }
+        try {
+            out.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void checkOpen() {
+        if (done)
+            throw new IllegalStateException("The writer is closed.");
+    }
+
+    private void beforeValue(int type) {
+        checkOpen();
+        pendingVersion = -1;
+        if (lists[depth]) {
+            if (remaining[depth] == 0)
+                throw new IllegalStateException("The list has more elements than its size.");
+            if (elementTypes[depth] == 0) {
+                elementTypes[depth] = (byte) type;
+                writer.buf[typePos] = (byte) type;
+            } else if (elementTypes[depth] != type) {
+                throw new IllegalArgumentException("Cannot add " + NBTType.getName(type) + " to a list of " + NBTType.getName(elementTypes[depth]) + ".");
+            }
+            remaining[depth]--;
+        } else {
+            if (name == null)
+                throw new IllegalStateException("Expected a name before the " + NBTType.getName(type) + " value.");
+            writer.writeByte(type);
+            writer.writeEncoded(ModifiedUTF8.encodeKey(name));
+            name = null;
+        }
+    }
+
+    private NBTStreamWriter afterValue() {
+        //An empty list's element type is still to be filled in so it must stay in the buffer
+        boolean typePending = lists[depth] && elementTypes[depth] == 0 && remaining[depth] > 0;
+        if (writer.pos >= NBTCodec.CHUNK && !typePending)
+            drain();
+        return this;
+    }
+
+    private void push(boolean list, int size) {
+        if (depth + 1 >= MAX_DEPTH)
+            throw new NBTException("Tag is nested deeper than " + MAX_DEPTH + " levels.");
+        depth++;
+        if (depth == lists.length) {
+            lists = Arrays.copyOf(lists, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+            elementTypes = Arrays.copyOf(elementTypes, depth * 2);
+        }
+        lists[depth] = list;
+        remaining[depth] = size;
+        elementTypes[depth] = 0;
+    }
+
+    /**
+     * Hand the buffered bytes to the stream, through the deflater if compressed.
+     */
+    private void drain() {
+        try {
+            if (deflater == null) {
+                out.write(writer.buf, 0, writer.pos);
+            } else {
+                if (!headerWritten) {
+                    out.write(NBTCodec.GZIP_HEADER);
+                    headerWritten = true;
+                }
+                crc.update(writer.buf, 0, writer.pos);
+                deflater.setInput(writer.buf, 0, writer.pos);
+                while (!deflater.needsInput())
+                    out.write(compressed, 0, deflater.deflate(compressed, 0, compressed.length));
+            }
+            length += writer.pos;
+            writer.pos = 0;
+        } catch (IOException e) {
+            abort();
+            throw new NBTException("Error writing tag.", e);
+        }
+    }
+}
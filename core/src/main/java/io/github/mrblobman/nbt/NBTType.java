@@ -27,7 +27,7 @@ import java.util.BitSet;
 
 public final class NBTType<T> {
     private static final String[] TAG_NAMES = new String[] {
-            "END", "BYTE", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE", "BYTE[]", "STRING", "LIST", "COMPOUND", "INT[]"
+            "END", "BYTE", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE", "BYTE[]", "STRING", "LIST", "COMPOUND", "INT[]", "LONG[]"
     };
     private static final NBTType<EndTagValue>       END         = new NBTType<>(0, EndTagValue.VALUE);
     public static final NBTType<Byte>               BYTE        = new NBTType<>(1, (byte)   0);
@@ -41,6 +41,7 @@ public final class NBTType<T> {
     public static final NBTType<NBTListTag>         LIST        = new NBTType<>(9, null);
     public static final NBTType<NBTCompoundTag>     COMPOUND    = new NBTType<>(10, null);
     public static final NBTType<int[]>              INT_ARRAY   = new NBTType<>(11, new int[0]);
+    public static final NBTType<long[]>             LONG_ARRAY  = new NBTType<>(12, new long[0]);
     
     private static final BitSet NUMBER_IDS = new BitSet(6);
     static {
@@ -92,6 +93,8 @@ public final class NBTType<T> {
                 return (NBTBaseTag<T>) TagFactory.get().newCompoundTag();
             case 11:
                 return (NBTBaseTag<T>) TagFactory.get().newIntArrayTag((int[]) defaultVal);
+            case 12:
+                return (NBTBaseTag<T>) TagFactory.get().newLongArrayTag((long[]) defaultVal);
         }
         throw new Error("NBTType has been instantiated illegally (via reflection?) with an invalid type id of "+ID);
     }
@@ -129,6 +132,8 @@ public final class NBTType<T> {
                 return (NBTBaseTag<T>) TagFactory.get().wrapCompoundTag(handle);
             case 11:
                 return (NBTBaseTag<T>) TagFactory.get().wrapIntArrayTag(handle);
+            case 12:
+                return (NBTBaseTag<T>) TagFactory.get().wrapLongArrayTag(handle);
         }
         throw new Error("NBTType has been instantiated illegally (via reflection?) with an invalid type id of "+ID);
     }
@@ -168,6 +173,8 @@ public final class NBTType<T> {
                 return NBTType.COMPOUND;
             case 11:
                 return NBTType.INT_ARRAY;
+            case 12:
+                return NBTType.LONG_ARRAY;
             case 0:
             default:
                 throw new IllegalArgumentException("Unknown tag type id "+type);
@@ -182,10 +189,10 @@ public final class NBTType<T> {
     }
 
     /**
-     * @return true if this tag wraps a byte or int array, false otherwise
+     * @return true if this tag wraps a byte, int or long array, false otherwise
      */
     public boolean isArray() {
-        return ID == 7 || ID == 11;
+        return ID == 7 || ID == 11 || ID == 12;
     }
 
     /**
@@ -202,6 +209,13 @@ public final class NBTType<T> {
         return ID == 11;
     }
 
+    /**
+     * @return true if this tag wraps a long array, false otherwise
+     */
+    public boolean isLongArray() {
+        return ID == 12;
+    }
+
     /**
      * @return true if this tag wraps a String, false otherwise
      */
@@ -222,4 +236,9 @@ public final class NBTType<T> {
     public boolean isCompound() {
         return ID == 10;
     }
+
+    @Override
+    public String toString() {
+        return getName(ID);
+    }
 }
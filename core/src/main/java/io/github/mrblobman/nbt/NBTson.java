@@ -25,8 +25,11 @@ package io.github.mrblobman.nbt;
 
 import org.bukkit.inventory.ItemStack;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.ServiceLoader;
 
 /**
  * See {@link NBTsonBuilder} for creating a new instance of this class.
@@ -37,14 +40,22 @@ import java.util.Map;
  *
  * See the {@link #read(ItemStack, String, Class)} for reading a serialized object from
  * an item and {@link #write(ItemStack, String, Object)} for writing an object to an item.
+ * Objects can also be saved to files with {@link #writeCompressed(OutputStream, String, Object)},
+ * which writes them in a single pass without building the tags first.
+ *
+ * Code that reads or writes the same keys often should create {@link NBTsonKey}s with
+ * {@link #key(String, Class)} once, and use {@link #readAll(ItemStack, NBTsonKey[])} and
+ * {@link #edit(ItemStack, NBTsonEditor)} to handle many keys with a single item update.
  */
 public class NBTson {
     private SerializationContext context;
     private NBTIODelegate<ItemStack> itemIODelegate;
+    private boolean writeBackMigrations;
 
-    private NBTson(NBTIODelegate<ItemStack> itemIODelegate, SerializationContext context) {
+    private NBTson(NBTIODelegate<ItemStack> itemIODelegate, SerializationContext context, boolean writeBackMigrations) {
         this.itemIODelegate = itemIODelegate;
         this.context = context;
+        this.writeBackMigrations = writeBackMigrations;
     }
 
     /**
@@ -62,7 +73,173 @@ public class NBTson {
         if (dataTag == null)
             return null;
         try {
-            return context.deserialize(dataTag, type);
+            boolean migrated = context.migrate(dataTag, type);
+            T value = context.deserialize(dataTag, type);
+            if (migrated)
+                writeBack(item, key, dataTag);
+            return value;
+        } catch (NBTException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read an object from the item at the given key into an existing object
+     * instead of creating a new one. The deserializer of the target's class must
+     * be an {@link NBTInstanceDeserializer}, such as the ones registered with
+     * {@link NBTsonBuilder#registerAuto(Class)}.
+     * @param item the ItemStack containing the object.
+     * @param key the key that the object was originally written to.
+     * @param target the object to fill in.
+     * @param <T> the type of the object being deserialized.
+     * @return the target or null if either the object cannot be
+     * deserialized or is not on the item.
+     */
+    public <T> T readInto(ItemStack item, String key, T target) {
+        NBTCompoundTag itemTag = itemIODelegate.read(item);
+        NBTBaseTag dataTag = itemTag.getTag(key);
+        if (dataTag == null)
+            return null;
+        try {
+            boolean migrated = context.migrate(dataTag, target.getClass());
+            T value = context.deserializeInto(dataTag, target);
+            if (migrated)
+                writeBack(item, key, dataTag);
+            return value;
+        } catch (NBTException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create a key that reads and writes objects of {@code type} at {@code key}.
+     * The serializers of the type are looked up once here so reading and writing
+     * through the key skips the lookups done by {@link #read(ItemStack, String, Class)}
+     * and {@link #write(ItemStack, String, Object)}.
+     * @param key the key that the object is written to.
+     * @param type the class of the object stored at the key.
+     * @param <T> the type of the object.
+     * @return the key
+     * @throws IllegalArgumentException if there is no deserializer for the type
+     */
+    public <T> NBTsonKey<T> key(String key, Class<T> type) {
+        return new NBTsonKey<>(this, context, key, type);
+    }
+
+    /**
+     * Read the objects at many keys from the item. The item's tag is only extracted
+     * once, rather than once per key as it is when calling {@link NBTsonKey#read(ItemStack)}
+     * for each key. Migrated data is written back in a single update.
+     * @param item the ItemStack containing the objects.
+     * @param keys the keys to read.
+     * @return the objects read, see {@link NBTsonValues#get(NBTsonKey)}
+     */
+    public NBTsonValues readAll(ItemStack item, NBTsonKey<?>... keys) {
+        NBTCompoundTag itemTag = itemIODelegate.read(item);
+        NBTCompoundTag migrations = writeBackMigrations ? TagFactory.get().newCompoundTag() : null;
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            values[i] = keys[i].read(item, itemTag, migrations);
+        if (migrations != null && migrations.size() > 0)
+            replace(item, migrations);
+        return new NBTsonValues(keys.clone(), values);
+    }
+
+    /**
+     * Write many objects to the item with a single update. The editor's writes are
+     * collected and then appended to the item at once, if the editor or one of the
+     * serializers throws the item is left untouched.
+     * <pre>
+     *     nbtson.edit(item, new NBTsonEditor() {
+     *         public void edit(NBTsonEdit edit) {
+     *             edit.put(stats, newStats).put(owner, player.getUniqueId());
+     *         }
+     *     });
+     * </pre>
+     * @param item the ItemStack to write to.
+     * @param editor the writes to apply.
+     * @throws NBTSerializationException if one of the objects cannot be serialized
+     */
+    public void edit(ItemStack item, NBTsonEditor editor) {
+        NBTsonEdit edit = new NBTsonEdit(context);
+        editor.edit(edit);
+        if (edit.size() > 0)
+            itemIODelegate.append(item, edit.changes());
+    }
+
+    NBTCompoundTag readTag(ItemStack item) {
+        return itemIODelegate.read(item);
+    }
+
+    void append(ItemStack item, NBTCompoundTag data) {
+        itemIODelegate.append(item, data);
+    }
+
+    void writeBack(ItemStack item, String key, NBTBaseTag migrated) {
+        if (!writeBackMigrations)
+            return;
+        NBTCompoundTag compoundTag = TagFactory.get().newCompoundTag();
+        compoundTag.put(key, migrated);
+        replace(item, compoundTag);
+    }
+
+    /**
+     * Replace the values at the keys of {@code data} on the item. Unlike appending,
+     * which merges nested compounds, this drops the keys that a migration renamed
+     * or removed from the old value.
+     */
+    private void replace(ItemStack item, NBTCompoundTag data) {
+        NBTCompoundTag itemTag = itemIODelegate.read(item);
+        for (String key : data.keys())
+            itemTag.put(key, data.getTag(key));
+        itemIODelegate.write(item, itemTag);
+    }
+
+    /**
+     * Read a lazily deserialized view of the object on the item at the given key. Only
+     * the values the caller asks for are decoded, see
+     * {@link SerializationContext#deserializeLazy(NBTBaseTag, Class)}. No migrations
+     * are applied, use {@link #readLazy(ItemStack, String, Class, Class)} for versioned data.
+     * @param item the ItemStack containing the object.
+     * @param key the key that the object was originally written to.
+     * @param view the interface of getters for the values of the object.
+     * @param <T> the type of the view.
+     * @return the view or null if the object is not on the item
+     * or is not a compound.
+     * @throws IllegalArgumentException if the view is not an interface of getters
+     */
+    public <T> T readLazy(ItemStack item, String key, Class<T> view) {
+        NBTCompoundTag itemTag = itemIODelegate.read(item);
+        NBTBaseTag dataTag = itemTag.getTag(key);
+        if (dataTag == null || !dataTag.isCompound())
+            return null;
+        return context.deserializeLazy(dataTag, view);
+    }
+
+    /**
+     * Read a lazily deserialized view of an object of {@code type} on the item at the
+     * given key. The data is migrated to the current version of {@code type} before the
+     * view is created, see {@link NBTsonBuilder#registerMigration(Class, int, int, NBTMigration)}.
+     * @param item the ItemStack containing the object.
+     * @param key the key that the object was originally written to.
+     * @param type the class of the object that was written.
+     * @param view the interface of getters for the values of the object.
+     * @param <T> the type of the view.
+     * @return the view or null if the object is not on the item, is not
+     * a compound or cannot be migrated.
+     * @throws IllegalArgumentException if the view is not an interface of getters
+     */
+    public <T> T readLazy(ItemStack item, String key, Class<?> type, Class<T> view) {
+        NBTCompoundTag itemTag = itemIODelegate.read(item);
+        NBTBaseTag dataTag = itemTag.getTag(key);
+        if (dataTag == null || !dataTag.isCompound())
+            return null;
+        try {
+            boolean migrated = context.migrate(dataTag, type);
+            T value = context.deserializeLazy(dataTag, view);
+            if (migrated)
+                writeBack(item, key, dataTag);
+            return value;
         } catch (NBTException e) {
             return null;
         }
@@ -83,23 +260,72 @@ public class NBTson {
         itemIODelegate.append(item, compoundTag);
     }
 
+    /**
+     * Write an object to a gzip compressed stream, such as a file. The object is written
+     * as it is serialized, see {@link NBTStreamSerializer}, so large object graphs are not
+     * held as tags in memory. The stream is closed once the object is written.
+     * The data can be read with {@link NBTCodec#readCompressed(java.io.InputStream)}.
+     * @param out the stream to write to
+     * @param key the key in the root compound that the object is written to
+     * @param data the object to write
+     * @throws NBTSerializationException if the object cannot be serialized
+     * @throws NBTException if the data cannot be written
+     */
+    public void writeCompressed(OutputStream out, String key, Object data) {
+        write(NBTStreamWriter.compressed(out), key, data);
+    }
+
+    /**
+     * Write an object as an uncompressed named compound tag in the same way as
+     * {@link #writeCompressed(OutputStream, String, Object)}.
+     * @param key the key in the root compound that the object is written to
+     * @param data the object to write
+     * @return the encoded tag
+     * @throws NBTSerializationException if the object cannot be serialized
+     */
+    public byte[] toByteArray(String key, Object data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(NBTStreamWriter.uncompressed(out), key, data);
+        return out.toByteArray();
+    }
+
+    private void write(NBTStreamWriter writer, String key, Object data) {
+        try {
+            context.serialize(data, writer.name(key));
+            writer.close();
+        } finally {
+            writer.abort();
+        }
+    }
+
     /**
      * Following the Builder pattern this class is designed for chaining registration calls
      * for all supported serializers and deserializers that will be required by the constructed
      * {@link NBTson} instance.
+     * <br>
+     * A new builder already supports boxed primitives, Strings, UUIDs, primitive arrays,
+     * collections, maps with String keys and enums. Registering a serializer for one of
+     * these types replaces the built in one.
      */
     public static class NBTsonBuilder {
         private Map<Class, NBTSerializer> serializers;
         private Map<Class, NBTDeserializer> deserializers;
+        private Map<Class, NBTStreamSerializer> streamSerializers;
+        private Map<Class, MigrationSchema> schemas;
         private NBTIODelegate<ItemStack> itemIODelegate;
+        private boolean writeBackMigrations;
 
         public NBTsonBuilder() {
             this.serializers = new HashMap<>();
             this.deserializers = new HashMap<>();
+            this.streamSerializers = new HashMap<>();
+            this.schemas = new HashMap<>();
+            DefaultSerializers.registerAll(this);
         }
 
         public <T> NBTsonBuilder registerSerializer(Class<T> type, NBTSerializer<T> serializer) {
             serializers.put(type, serializer);
+            streamSerializers.remove(type);
             return this;
         }
 
@@ -111,12 +337,109 @@ public class NBTson {
         public <T> NBTsonBuilder register(Class<T> type, NBTSerializer<T> serializer, NBTDeserializer<T> deserializer) {
             serializers.put(type, serializer);
             deserializers.put(type, deserializer);
+            streamSerializers.remove(type);
             return this;
         }
 
         public <T, U extends NBTSerializer<T> & NBTDeserializer<T>> NBTsonBuilder register(Class<T> type, U serializer) {
             serializers.put(type, serializer);
             deserializers.put(type, serializer);
+            streamSerializers.remove(type);
+            return this;
+        }
+
+        /**
+         * Register a serializer that writes {@code type} straight to an {@link NBTStreamWriter}
+         * when writing to a stream. It should write the same value as the {@link NBTSerializer}
+         * of the type. A serializer registered for the type later on replaces it, a serializer
+         * that implements both interfaces is used for both.
+         * @param type the class the serializer writes
+         * @param serializer the stream serializer
+         * @param <T> the type of the objects to serialize
+         * @return this builder
+         */
+        public <T> NBTsonBuilder registerStreamSerializer(Class<T> type, NBTStreamSerializer<T> serializer) {
+            streamSerializers.put(type, serializer);
+            return this;
+        }
+
+        /**
+         * Register a serializer and deserializer for {@code type} that are built from
+         * its fields. The class must have a no argument constructor, it may be private.
+         * Every non static, non transient field is written at the key of its name.
+         * Mark fields that should not be saved as {@code transient}.
+         * @param type the class to serialize automatically
+         * @param <T> the type of the objects to serialize
+         * @return this builder
+         * @throws IllegalArgumentException if the class does not have a no argument
+         * constructor or its fields cannot be accessed
+         */
+        public <T> NBTsonBuilder registerAuto(Class<T> type) {
+            return register(type, new AutoSerializer<T>(type));
+        }
+
+        /**
+         * Write constants of {@code type} by ordinal instead of by name. The ordinal is
+         * stored in the smallest number tag that fits all of the constants, usually a
+         * single byte. Constants written by name can still be read, but reordering
+         * or removing constants changes what stored ordinals mean.
+         * @param type the enum class
+         * @param <E> the enum type
+         * @return this builder
+         */
+        public <E extends Enum<E>> NBTsonBuilder registerEnumByOrdinal(Class<E> type) {
+            return register(type, new DefaultSerializers.EnumCodec<>(type, true));
+        }
+
+        /**
+         * Register all of the serializers generated at compile time for classes marked with
+         * {@link NBTSerializable} that are visible to the class loader. Pass the class loader
+         * of your plugin, for example {@code MyPlugin.class.getClassLoader()}.
+         * @param loader the class loader to search for generated {@link NBTSerializerRegistry}s
+         * @return this builder
+         */
+        public NBTsonBuilder registerGenerated(ClassLoader loader) {
+            for (NBTSerializerRegistry registry : ServiceLoader.load(NBTSerializerRegistry.class, loader))
+                registry.registerAll(this);
+            return this;
+        }
+
+        /**
+         * Register a migration that upgrades the serialized data of {@code type} from
+         * {@code fromVersion} to {@code toVersion}. Registering a migration makes the type
+         * versioned, its current version is the highest {@code toVersion} of its migrations.
+         * Data is written with its version and brought up to date before it is deserialized.
+         * Data without a version is at version 0.
+         * <br>
+         * A migration can skip versions, when more than one path exists the one with the
+         * fewest migrations is taken. The chain for each pair of versions is only worked out
+         * once.
+         * @param type the versioned class
+         * @param fromVersion the version of the data the migration upgrades
+         * @param toVersion the version of the data after the migration
+         * @param migration the migration
+         * @return this builder
+         * @throws IllegalArgumentException if {@code fromVersion} is negative or
+         * {@code toVersion} is not greater than {@code fromVersion}
+         */
+        public NBTsonBuilder registerMigration(Class<?> type, int fromVersion, int toVersion, NBTMigration migration) {
+            MigrationSchema schema = schemas.get(type);
+            if (schema == null)
+                schemas.put(type, schema = new MigrationSchema());
+            schema.add(fromVersion, toVersion, migration);
+            return this;
+        }
+
+        /**
+         * Write migrated data back to the item the first time it is read so that the
+         * migrations only run once per item. The data is only written back when the object
+         * being read was migrated, not when just the objects nested in it were. Disabled
+         * by default.
+         * @param writeBackMigrations true to update items after their data is migrated
+         * @return this builder
+         */
+        public NBTsonBuilder setWriteBackMigrations(boolean writeBackMigrations) {
+            this.writeBackMigrations = writeBackMigrations;
             return this;
         }
 
@@ -126,10 +449,15 @@ public class NBTson {
         }
 
         public NBTson build() {
-            SerializationContext context = new SerializationContext(serializers, deserializers);
+            //Copy the registrations, the context caches lookups so it must not see later changes
+            Map<Class, MigrationSchema> schemas = new HashMap<>();
+            for (Map.Entry<Class, MigrationSchema> entry : this.schemas.entrySet())
+                schemas.put(entry.getKey(), entry.getValue().copy());
+            SerializationContext context = new SerializationContext(new HashMap<>(serializers), new HashMap<>(deserializers),
+                    new HashMap<>(streamSerializers), schemas);
             NBTIODelegate<ItemStack> itemIODelegate = this.itemIODelegate == null ?
                     TagFactory.get().getItemIODelegate() : this.itemIODelegate;
-            return new NBTson(itemIODelegate, context);
+            return new NBTson(itemIODelegate, context, writeBackMigrations);
         }
     }
 }
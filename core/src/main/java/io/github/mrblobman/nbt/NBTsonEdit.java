@@ -0,0 +1,76 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * The pending writes of an {@link NBTson#edit(org.bukkit.inventory.ItemStack, NBTsonEditor) edit}.
+ * The objects are serialized right away but the item is only updated once, after
+ * the {@link NBTsonEditor} returns.
+ */
+public final class NBTsonEdit {
+    private final SerializationContext context;
+    private final NBTCompoundTag changes;
+
+    NBTsonEdit(SerializationContext context) {
+        this.context = context;
+        this.changes = TagFactory.get().newCompoundTag();
+    }
+
+    /**
+     * Write an object at the key.
+     * @param key the key to write to
+     * @param value the object to write
+     * @param <T> the type of the object
+     * @return this edit
+     * @throws NBTSerializationException if the object cannot be serialized
+     */
+    public <T> NBTsonEdit put(NBTsonKey<T> key, T value) {
+        key.write(changes, value);
+        return this;
+    }
+
+    /**
+     * Write an object at the key in the same way as
+     * {@link NBTson#write(org.bukkit.inventory.ItemStack, String, Object)}.
+     * @param key the key to write to
+     * @param value the object to write
+     * @return this edit
+     * @throws NBTSerializationException if the object cannot be serialized
+     */
+    public NBTsonEdit put(String key, Object value) {
+        changes.put(key, context.serialize(value));
+        return this;
+    }
+
+    /**
+     * @return the number of keys written so far
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    NBTCompoundTag changes() {
+        return changes;
+    }
+}
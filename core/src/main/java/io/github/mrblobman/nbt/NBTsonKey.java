@@ -0,0 +1,137 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * An NBTsonKey binds the name an object is stored at on an item to the type of
+ * the object. The {@link NBTKey}, serializer, deserializer and migrations of the type
+ * are looked up once when the key is created instead of on every read and write.
+ * <br>
+ * Keys are meant to be created once and stored alongside the {@link NBTson} instance:
+ * <pre>
+ *     private final NBTsonKey&lt;Stats&gt; stats = nbtson.key("Stats", Stats.class);
+ *     ...
+ *     Stats value = stats.read(item);
+ *     stats.write(item, value);
+ * </pre>
+ * @param <T> the type of the object stored at the key
+ */
+public final class NBTsonKey<T> {
+    private final NBTson nbtson;
+    private final SerializationContext context;
+    private final NBTKey key;
+    private final Class<T> type;
+    private final NBTSerializer serializer;
+    private final NBTDeserializer<T> deserializer;
+    private final MigrationSchema schema;
+
+    NBTsonKey(NBTson nbtson, SerializationContext context, String name, Class<T> type) {
+        this.deserializer = context.findDeserializer(type);
+        if (this.deserializer == null)
+            throw new IllegalArgumentException("No deserializer for " + type.getSimpleName());
+        this.nbtson = nbtson;
+        this.context = context;
+        this.key = NBTKey.of(name);
+        this.type = type;
+        this.serializer = context.findSerializer(type);
+        this.schema = context.schema(type);
+    }
+
+    /**
+     * @return the name of the mapping on the item
+     */
+    public String name() {
+        return key.name();
+    }
+
+    /**
+     * @return the type of the object stored at the key
+     */
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * Read the object stored at this key from the item.
+     * @param item the ItemStack containing the object.
+     * @return the deserialized object or null if either the object
+     * cannot be deserialized or is not on the item.
+     * @see NBTson#read(ItemStack, String, Class)
+     */
+    public T read(ItemStack item) {
+        return read(item, nbtson.readTag(item), null);
+    }
+
+    /**
+     * Read the object from an already extracted item tag.
+     * @param migrations the compound to collect migrated data in so that it can be
+     *                   written back in one go, or null to write it back right away
+     */
+    T read(ItemStack item, NBTCompoundTag itemTag, NBTCompoundTag migrations) {
+        NBTBaseTag dataTag = itemTag.getTag(key);
+        if (dataTag == null)
+            return null;
+        try {
+            boolean migrated = context.migrate(dataTag, type, schema);
+            T value = context.deserialize(dataTag, type, deserializer, schema);
+            if (migrated) {
+                if (migrations == null)
+                    nbtson.writeBack(item, key.name(), dataTag);
+                else
+                    migrations.put(key, dataTag);
+            }
+            return value;
+        } catch (NBTException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write an object to the item at this key.
+     * @param item the ItemStack to write to.
+     * @param value the object to write.
+     * @throws NBTSerializationException if the object cannot be serialized
+     * @see NBTson#write(ItemStack, String, Object)
+     */
+    public void write(ItemStack item, T value) {
+        NBTCompoundTag compoundTag = TagFactory.get().newCompoundTag();
+        write(compoundTag, value);
+        nbtson.append(item, compoundTag);
+    }
+
+    void write(NBTCompoundTag target, T value) {
+        //Subclasses of the key's type may have their own serializer
+        NBTBaseTag tag = serializer != null && value.getClass() == type
+                ? context.serialize(value, serializer, schema)
+                : context.serialize(value);
+        target.put(key, tag);
+    }
+
+    @Override
+    public String toString() {
+        return key.name() + ":" + type.getSimpleName();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * The objects read from an item by {@link NBTson#readAll(org.bukkit.inventory.ItemStack, NBTsonKey[])}.
+ * Each value is looked up with the key it was read with:
+ * <pre>
+ *     NBTsonValues values = nbtson.readAll(item, stats, owner);
+ *     Stats s = values.get(stats);
+ * </pre>
+ */
+public final class NBTsonValues {
+    private final NBTsonKey<?>[] keys;
+    private final Object[] values;
+
+    NBTsonValues(NBTsonKey<?>[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Get the object read at the key.
+     * @param key one of the keys passed to {@code readAll}
+     * @param <T> the type of the object
+     * @return the deserialized object or null if either the object
+     * cannot be deserialized or is not on the item.
+     * @throws IllegalArgumentException if the key was not read
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(NBTsonKey<T> key) {
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] == key)
+                return (T) values[i];
+        throw new IllegalArgumentException(key + " was not read");
+    }
+
+    /**
+     * @return the number of keys that were read
+     */
+    public int size() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A PackedIntArray stores a fixed number of unsigned {@code bitsPerValue} wide
+ * values densely inside of an {@link NBTLongArrayTag}. Values never span
+ * two longs, each long holds {@code 64 / bitsPerValue} values, which keeps
+ * {@link #get(int)} and {@link #set(int, int)} O(1) with a single array access.
+ * <br>
+ * The view writes directly to the live storage of the tag so the tag can be
+ * put into a compound and saved without any extra conversion step.
+ * <pre>
+ *     PackedIntArray flags = PackedIntArray.create(4, 16 * 16 * 256);
+ *     flags.set(index, 0b1010);
+ *     chunkData.put("Flags", flags.tag());
+ * </pre>
+ */
+public final class PackedIntArray {
+    private final NBTLongArrayTag tag;
+    private final long[] data;
+    private final int bitsPerValue;
+    private final int valuesPerLong;
+    private final long mask;
+    private final int size;
+
+    /**
+     * Create a view over an existing tag.
+     * @param tag the tag holding the packed data
+     * @param bitsPerValue the number of bits used by each value, between 1 and 32
+     * @param size the number of values stored in the tag
+     * @throws IllegalArgumentException if the {@code bitsPerValue} is out of range
+     * or the tag is too short to hold {@code size} values.
+     */
+    public PackedIntArray(NBTLongArrayTag tag, int bitsPerValue, int size) {
+        if (bitsPerValue < 1 || bitsPerValue > 32)
+            throw new IllegalArgumentException("bitsPerValue must be between 1 and 32 but was " + bitsPerValue);
+        if (size < 0)
+            throw new IllegalArgumentException("size cannot be negative but was " + size);
+
+        this.tag = tag;
+        this.data = tag.get();
+        this.bitsPerValue = bitsPerValue;
+        this.valuesPerLong = 64 / bitsPerValue;
+        this.mask = (1L << bitsPerValue) - 1;
+        this.size = size;
+
+        int required = requiredLength(bitsPerValue, size);
+        if (data.length < required)
+            throw new IllegalArgumentException("A tag of length " + data.length + " cannot hold " + size + " values of " + bitsPerValue + " bits. " + required + " longs are required.");
+    }
+
+    /**
+     * Create a new tag large enough to store {@code size} values and
+     * a view over it.
+     * @param bitsPerValue the number of bits used by each value, between 1 and 32
+     * @param size the number of values to store
+     * @return the view over the new tag, the tag is available via {@link #tag()}
+     * @throws UnsupportedOperationException if the server version does not
+     * support long array tags.
+     */
+    public static PackedIntArray create(int bitsPerValue, int size) {
+        if (bitsPerValue < 1 || bitsPerValue > 32)
+            throw new IllegalArgumentException("bitsPerValue must be between 1 and 32 but was " + bitsPerValue);
+        NBTBaseTag<long[]> tag = TagFactory.get().newLongArrayTag(new long[requiredLength(bitsPerValue, size)]);
+        return new PackedIntArray((NBTLongArrayTag) tag, bitsPerValue, size);
+    }
+
+    /**
+     * Compute the number of longs needed to store {@code size} values
+     * of {@code bitsPerValue} bits.
+     * @param bitsPerValue the number of bits used by each value
+     * @param size the number of values to store
+     * @return the length of the long[] required
+     */
+    public static int requiredLength(int bitsPerValue, int size) {
+        int valuesPerLong = 64 / bitsPerValue;
+        return (size + valuesPerLong - 1) / valuesPerLong;
+    }
+
+    /**
+     * Get the value at the given index.
+     * @param index the index of the value
+     * @return the unsigned value at {@code index}. For 32 bit values the
+     * result should be treated as a raw int.
+     * @throws IndexOutOfBoundsException if the index is not in {@code [0, size())}
+     */
+    public int get(int index) {
+        checkIndex(index);
+        int shift = (index % valuesPerLong) * bitsPerValue;
+        return (int) ((data[index / valuesPerLong] >>> shift) & mask);
+    }
+
+    /**
+     * Set the value at the given index.
+     * @param index the index of the value
+     * @param value the new value, it must fit in {@link #bitsPerValue()} unsigned bits
+     * @throws IndexOutOfBoundsException if the index is not in {@code [0, size())}
+     * @throws IllegalArgumentException if the value does not fit in {@link #bitsPerValue()} bits
+     */
+    public void set(int index, int value) {
+        checkIndex(index);
+        if (bitsPerValue < 32 && (value >>> bitsPerValue) != 0)
+            throw new IllegalArgumentException("Value " + value + " does not fit in " + bitsPerValue + " bits");
+        int shift = (index % valuesPerLong) * bitsPerValue;
+        int pos = index / valuesPerLong;
+        data[pos] = (data[pos] & ~(mask << shift)) | ((value & mask) << shift);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    /**
+     * @return the number of values in this array
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bits each value takes up
+     */
+    public int bitsPerValue() {
+        return bitsPerValue;
+    }
+
+    /**
+     * @return the tag that this array stores its data in
+     */
+    public NBTLongArrayTag tag() {
+        return tag;
+    }
+}
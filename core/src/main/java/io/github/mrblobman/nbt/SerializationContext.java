@@ -23,7 +23,7 @@
  */
 package io.github.mrblobman.nbt;
 
-import java.util.Map;
+import java.util.*;
 
 /**
  * The SerializationContext contains serializers, deserializers, and the factory used
@@ -31,11 +31,43 @@ import java.util.Map;
  * serialization of complex types to this context that will find the appropriate {@link NBTSerializer}
  * or {@link NBTDeserializer} for the job. Each should only be responsible for the name of the
  * key that the complex type is at and the primitive fields (including strings and lists of primitives).
+ * <br>
+ * Serializers are resolved by the class of the data. If there is no serializer registered for
+ * the exact class the superclasses are searched, nearest first, followed by the interfaces.
+ * The result is cached per class so after the first lookup a subclass costs the same as
+ * an exact match. Stream serializers are resolved the same way, a class with a plain
+ * {@link NBTSerializer} nearer than any {@link NBTStreamSerializer} falls back to building
+ * its tag and writing that.
+ * <br>
+ * Deserializers are resolved by the exact class that is requested. Enums without a
+ * registered deserializer are read from their name or ordinal.
+ * <br>
+ * Types with {@link NBTMigration}s are versioned. Their compound is stamped with the
+ * current {@link NBTMigration#DATA_VERSION} when the exact class of the data is versioned,
+ * and older data is migrated in place before it is deserialized.
  */
 public class SerializationContext {
+    private static final Object NO_SERIALIZER = new Object();
+
     private Map<Class, NBTSerializer> serializers;
     private Map<Class, NBTDeserializer> deserializers;
+    private Map<Class, NBTStreamSerializer> streamSerializers;
+    private Map<Class, MigrationSchema> schemas;
     private TagFactory factory;
+    private final ClassValue<Object> resolvedSerializers = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            NBTSerializer serializer = resolveSerializer(type);
+            return serializer == null ? NO_SERIALIZER : serializer;
+        }
+    };
+    private final ClassValue<Object> resolvedStreamSerializers = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            Object serializer = resolve(type, true);
+            return serializer == null ? NO_SERIALIZER : serializer;
+        }
+    };
 
     /**
      * See: {@link NBTson.NBTsonBuilder} for creating a new {@link NBTson} instance used
@@ -44,8 +76,27 @@ public class SerializationContext {
      * @param deserializers a mapping of types to their respective deserializer
      */
     protected SerializationContext(Map<Class, NBTSerializer> serializers, Map<Class, NBTDeserializer> deserializers) {
+        this(serializers, deserializers, Collections.<Class, NBTStreamSerializer>emptyMap());
+    }
+
+    /**
+     * See: {@link NBTson.NBTsonBuilder} for creating a new {@link NBTson} instance used
+     * for serialization and deserialization.
+     * @param serializers a mapping of types to their respective serializer
+     * @param deserializers a mapping of types to their respective deserializer
+     * @param streamSerializers a mapping of types to their respective stream serializer
+     */
+    protected SerializationContext(Map<Class, NBTSerializer> serializers, Map<Class, NBTDeserializer> deserializers,
+                                   Map<Class, NBTStreamSerializer> streamSerializers) {
+        this(serializers, deserializers, streamSerializers, Collections.<Class, MigrationSchema>emptyMap());
+    }
+
+    SerializationContext(Map<Class, NBTSerializer> serializers, Map<Class, NBTDeserializer> deserializers,
+                         Map<Class, NBTStreamSerializer> streamSerializers, Map<Class, MigrationSchema> schemas) {
         this.serializers = serializers;
         this.deserializers = deserializers;
+        this.streamSerializers = streamSerializers;
+        this.schemas = schemas;
         this.factory = TagFactory.get();
     }
 
@@ -59,10 +110,18 @@ public class SerializationContext {
      * the deserializer throws an exception.
      */
     public <T> T deserialize(NBTBaseTag tag, Class<T> type) {
-        NBTDeserializer<T> deserializer = deserializers.get(type);
+        NBTDeserializer<T> deserializer = findDeserializer(type);
         if (deserializer == null)
             throw new NBTDeserializationException(tag, "No deserializer for "+type.getSimpleName());
+        return deserialize(tag, type, deserializer, schemas.get(type));
+    }
 
+    /**
+     * Deserialize the tag with an already resolved deserializer and migration schema,
+     * see {@link NBTsonKey}.
+     */
+    <T> T deserialize(NBTBaseTag tag, Class<T> type, NBTDeserializer<T> deserializer, MigrationSchema schema) {
+        migrate(tag, type, schema);
         try {
             return deserializer.deserialize(tag, this);
         } catch (NBTDeserializationException e) {
@@ -72,6 +131,100 @@ public class SerializationContext {
         }
     }
 
+    /**
+     * Deserialize the tag into an existing object instead of creating a new one. The
+     * deserializer registered for the exact class of the target must be an
+     * {@link NBTInstanceDeserializer}.
+     * @param tag the raw data tag
+     * @param target the object to fill in
+     * @param <T> the type of the object represented by the serialized tag
+     * @return the target
+     * @throws NBTDeserializationException if the target's class does not have an
+     * {@link NBTInstanceDeserializer} or the deserializer throws an exception.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T deserializeInto(NBTBaseTag tag, T target) {
+        Class<T> type = (Class<T>) target.getClass();
+        NBTDeserializer<T> deserializer = findDeserializer(type);
+        if (!(deserializer instanceof NBTInstanceDeserializer))
+            throw new NBTDeserializationException(tag, "No deserializer that can fill in an existing "+type.getSimpleName());
+
+        migrate(tag, type);
+        try {
+            ((NBTInstanceDeserializer<T>) deserializer).deserializeInto(tag, target, this);
+            return target;
+        } catch (NBTDeserializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NBTDeserializationException(tag, "Exception encountered while deserializing into a "+type.getSimpleName()+" with "+deserializer.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Deserialize the tag into the current value of a field or property if it can be
+     * filled in, otherwise deserialize a new object. This is designed for deserializers of
+     * objects that contain other objects.
+     * @param tag the raw data tag
+     * @param current the current value, may be null
+     * @param type the declared type of the value
+     * @param <T> the type of the value
+     * @return {@code current} if it was filled in, otherwise the new object
+     */
+    public <T> T deserializeInto(NBTBaseTag tag, T current, Class<T> type) {
+        if (current != null && canDeserializeInto(current.getClass()))
+            return deserializeInto(tag, current);
+        return deserialize(tag, type);
+    }
+
+    /**
+     * Create a lazily deserialized view of a compound. The view implements the given
+     * interface of getters, each getter decodes the value at the key of its property
+     * name on first use and remembers it. The view keeps a reference to the tag, it
+     * should not be changed while the view is in use.
+     * <pre>
+     *     interface GuildInfo {
+     *         String getName();
+     *         int getLevel();
+     *     }
+     * </pre>
+     * A {@code GuildInfo} view of a serialized guild only decodes the name and level
+     * no matter how many members the guild has.
+     * <br>
+     * The view does not know the class the data was written from so no {@link NBTMigration}s
+     * are applied to the tag, use {@link #deserializeLazy(NBTBaseTag, Class, Class)} for
+     * data of a versioned class.
+     * @param tag the compound to view
+     * @param view the interface of getters
+     * @param <T> the type of the view
+     * @return the view of the tag
+     * @throws NBTDeserializationException if the tag is not a compound
+     * @throws IllegalArgumentException if the view is not an interface of getters
+     */
+    public <T> T deserializeLazy(NBTBaseTag tag, Class<T> view) {
+        if (!tag.type().isCompound())
+            throw new NBTDeserializationException(tag, "Expected a compound for a "+view.getSimpleName()+" but found a "+tag.type());
+        return LazyView.create((NBTCompoundTag) tag, view, this);
+    }
+
+    /**
+     * Create a lazily deserialized view of a compound that was serialized from {@code type}.
+     * The tag is brought up to date with the migrations registered for {@code type} before
+     * the view is created, see {@link #deserializeLazy(NBTBaseTag, Class)}.
+     * @param tag the compound to view
+     * @param type the class the data was serialized from
+     * @param view the interface of getters
+     * @param <T> the type of the view
+     * @return the view of the tag
+     * @throws NBTDeserializationException if the tag is not a compound or cannot be migrated
+     * @throws IllegalArgumentException if the view is not an interface of getters
+     */
+    public <T> T deserializeLazy(NBTBaseTag tag, Class<?> type, Class<T> view) {
+        if (!tag.type().isCompound())
+            throw new NBTDeserializationException(tag, "Expected a compound for a "+view.getSimpleName()+" but found a "+tag.type());
+        migrate(tag, type);
+        return LazyView.create((NBTCompoundTag) tag, view, this);
+    }
+
     /**
      * Serialize the given data as an NBTBaseTag.
      * @param data the data to serialize
@@ -80,12 +233,20 @@ public class SerializationContext {
      * or an exception is raised during serialization.
      */
     public NBTBaseTag serialize(Object data) {
-        NBTSerializer serializer = serializers.get(data.getClass());
+        NBTSerializer serializer = findSerializer(data.getClass());
         if (serializer == null)
             throw new NBTSerializationException("No serializer for "+data.getClass().getSimpleName());
+        return serialize(data, serializer, schemas.get(data.getClass()));
+    }
 
+    /**
+     * Serialize the data with an already resolved serializer and migration schema,
+     * see {@link NBTsonKey}.
+     */
+    @SuppressWarnings("unchecked")
+    NBTBaseTag serialize(Object data, NBTSerializer serializer, MigrationSchema schema) {
         try {
-            return serializer.serialize(data, this);
+            return stamp(schema, serializer.serialize(data, this));
         } catch (NBTSerializationException e) {
             throw e;
         } catch (Exception e) {
@@ -105,12 +266,36 @@ public class SerializationContext {
      * an exception is raised during serialization.
      */
     public <T, S extends T> NBTBaseTag serialize(S data, Class<T> type) {
-        NBTSerializer<T> serializer = serializers.get(type);
+        NBTSerializer<T> serializer = findSerializer(type);
         if (serializer == null)
             throw new NBTSerializationException("No serializer for "+type.getSimpleName());
+        return serialize(data, serializer, schemas.get(data.getClass()));
+    }
+
+    /**
+     * Serialize the given data straight into the writer as a single value. Types without
+     * an {@link NBTStreamSerializer} are serialized to a tag which is then written.
+     * @param data the data to serialize
+     * @param out the writer to write the value to, the name of the value must
+     *            already be written if it is in a compound
+     * @throws NBTSerializationException if a serializer for the class of the data cannot be found
+     * or an exception is raised during serialization.
+     */
+    @SuppressWarnings("unchecked")
+    public void serialize(Object data, NBTStreamWriter out) {
+        Object serializer = resolvedStreamSerializers.get(data.getClass());
+        if (serializer == NO_SERIALIZER)
+            throw new NBTSerializationException("No serializer for "+data.getClass().getSimpleName());
 
         try {
-            return serializer.serialize(data, this);
+            if (serializer instanceof NBTStreamSerializer) {
+                MigrationSchema schema = schemas.get(data.getClass());
+                if (schema != null)
+                    out.versionNextCompound(schema.version());
+                ((NBTStreamSerializer) serializer).serialize(data, out, this);
+            } else {
+                out.value(stamp(schemas.get(data.getClass()), ((NBTSerializer) serializer).serialize(data, this)));
+            }
         } catch (NBTSerializationException e) {
             throw e;
         } catch (Exception e) {
@@ -118,6 +303,58 @@ public class SerializationContext {
         }
     }
 
+    /**
+     * Bring the data of a versioned type up to its current version. The tag is changed in
+     * place. This is done by {@link #deserialize(NBTBaseTag, Class)} so it only needs to be
+     * called to find out if the data was migrated.
+     * @param tag the serialized data
+     * @param type the class of the serialized object
+     * @return true if the data was migrated, false if it is not versioned or already current
+     * @throws NBTDeserializationException if the data is newer than the current version, there
+     * is no chain of migrations from its version or a migration throws an exception
+     */
+    boolean migrate(NBTBaseTag tag, Class<?> type) {
+        return migrate(tag, type, schemas.get(type));
+    }
+
+    boolean migrate(NBTBaseTag tag, Class<?> type, MigrationSchema schema) {
+        if (schema == null || !tag.type().isCompound())
+            return false;
+
+        NBTCompoundTag data = (NBTCompoundTag) tag;
+        int version = data.getInt(NBTMigration.DATA_VERSION);
+        if (version == schema.version())
+            return false;
+        if (version > schema.version())
+            throw new NBTDeserializationException(tag, "The "+type.getSimpleName()+" data is version "+version+" which is newer than the current version "+schema.version());
+
+        NBTMigration migration = schema.chain(version, schema.version());
+        if (migration == null)
+            throw new NBTDeserializationException(tag, "No migration for "+type.getSimpleName()+" from version "+version+" to "+schema.version());
+        try {
+            migration.migrate(data);
+        } catch (NBTDeserializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NBTDeserializationException(tag, "Exception encountered while migrating a "+type.getSimpleName()+" from version "+version, e);
+        }
+        data.putInt(NBTMigration.DATA_VERSION, schema.version());
+        return true;
+    }
+
+    /**
+     * @return the migrations of the type or null if it is not versioned
+     */
+    MigrationSchema schema(Class<?> type) {
+        return schemas.get(type);
+    }
+
+    private NBTBaseTag stamp(MigrationSchema schema, NBTBaseTag tag) {
+        if (schema != null && tag.type().isCompound())
+            ((NBTCompoundTag) tag).putInt(NBTMigration.DATA_VERSION, schema.version());
+        return tag;
+    }
+
     /**
      * Check if this context is able to deserialize the given type.
      * @param type the class of the object to deserialize
@@ -125,7 +362,17 @@ public class SerializationContext {
      * of class {@code type}, false otherwise.
      */
     public boolean canDeserialize(Class type) {
-        return deserializers.containsKey(type);
+        return findDeserializer(type) != null;
+    }
+
+    /**
+     * Check if this context is able to deserialize into an existing object of the given type.
+     * @param type the class of the object to fill in
+     * @return true if the deserializer of {@code type} is an {@link NBTInstanceDeserializer},
+     * false otherwise.
+     */
+    public boolean canDeserializeInto(Class type) {
+        return findDeserializer(type) instanceof NBTInstanceDeserializer;
     }
 
     /**
@@ -135,7 +382,72 @@ public class SerializationContext {
      * of class {@code type}, false otherwise.
      */
     public boolean canSerialize(Class type) {
-        return serializers.containsKey(type);
+        return findSerializer(type) != null;
+    }
+
+    /**
+     * Find the serializer for objects of the given type.
+     * @param type the class of the object to serialize
+     * @return the serializer registered for the class or its nearest
+     * superclass or interface, or null if there is none
+     */
+    NBTSerializer findSerializer(Class<?> type) {
+        Object serializer = resolvedSerializers.get(type);
+        return serializer == NO_SERIALIZER ? null : (NBTSerializer) serializer;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> NBTDeserializer<T> findDeserializer(Class<T> type) {
+        NBTDeserializer<T> deserializer = deserializers.get(type);
+        if (deserializer == null && type.isEnum())
+            return DefaultSerializers.enumCodec(type);
+        return deserializer;
+    }
+
+    private NBTSerializer resolveSerializer(Class<?> type) {
+        return (NBTSerializer) resolve(type, false);
+    }
+
+    /**
+     * Find the nearest serializer registered for the type, its superclasses or
+     * its interfaces.
+     * @param type the class of the object to serialize
+     * @param stream true to prefer an {@link NBTStreamSerializer} over an {@link NBTSerializer}
+     *               registered for the same class
+     * @return the serializer or null if there is none
+     */
+    private Object resolve(Class<?> type, boolean stream) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            Object serializer = lookup(c, stream);
+            if (serializer != null)
+                return serializer;
+        }
+
+        //Breadth first through the interfaces so that the most
+        //directly implemented ones are checked first
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> seen = new HashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+            Collections.addAll(queue, c.getInterfaces());
+        while (!queue.isEmpty()) {
+            Class<?> c = queue.poll();
+            if (!seen.add(c))
+                continue;
+            Object serializer = lookup(c, stream);
+            if (serializer != null)
+                return serializer;
+            Collections.addAll(queue, c.getInterfaces());
+        }
+        return null;
+    }
+
+    private Object lookup(Class<?> type, boolean stream) {
+        if (stream) {
+            NBTStreamSerializer serializer = streamSerializers.get(type);
+            if (serializer != null)
+                return serializer;
+        }
+        return serializers.get(type);
     }
 
     /**
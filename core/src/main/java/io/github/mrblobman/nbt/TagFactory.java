@@ -125,6 +125,14 @@ public abstract class TagFactory {
      */
     public abstract NBTCompoundTag parse(String serialized) throws NBTException;
 
+    /**
+     * Deep copy an nms tag with its own clone method. The copy shares no
+     * mutable state with {@code handle}.
+     * @param handle the nms tag to copy
+     * @return the copy of the nms tag
+     */
+    protected abstract Object cloneHandle(Object handle);
+
     /**
      * Wrap the value in a byte tag.
      * @param value the value to wrap
@@ -221,4 +229,20 @@ public abstract class TagFactory {
     public abstract NBTBaseTag<int[]> newIntArrayTag(int[] value);
 
     protected abstract NBTBaseTag<int[]> wrapIntArrayTag(Object handle);
+
+    /**
+     * Wrap the value in a long[] tag. Long array tags were added in
+     * Minecraft 1.12 and are not available on older server versions.
+     * @param value the value to wrap
+     * @return a new long[] tag with the given value
+     * @throws UnsupportedOperationException if the server version does not
+     * support long array tags.
+     */
+    public NBTBaseTag<long[]> newLongArrayTag(long[] value) {
+        throw new UnsupportedOperationException("Long array tags are not supported by this server version.");
+    }
+
+    protected NBTBaseTag<long[]> wrapLongArrayTag(Object handle) {
+        throw new UnsupportedOperationException("Long array tags are not supported by this server version.");
+    }
 }
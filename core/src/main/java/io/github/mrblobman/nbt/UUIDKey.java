@@ -0,0 +1,92 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+/**
+ * A UUIDKey is a reusable name of a UUID stored in an {@link NBTCompoundTag}.
+ * A UUID is stored as 2 longs at {@code name + "Most"} and {@code name + "Least"},
+ * this key builds both of those names once so that the UUID accessors do not
+ * need to concatenate them on every call.
+ * <pre>
+ *     private static final UUIDKey OWNER = UUIDKey.of("Owner");
+ *     ...
+ *     UUID owner = tag.getUUID(OWNER);
+ * </pre>
+ */
+public final class UUIDKey {
+    private final String name;
+    private final NBTKey most;
+    private final NBTKey least;
+
+    private UUIDKey(String name) {
+        this.name = name;
+        this.most = NBTKey.of(name + "Most");
+        this.least = NBTKey.of(name + "Least");
+    }
+
+    /**
+     * Create a key for the UUID with the given name.
+     * @param name the name the UUID is stored under
+     * @return the key for the UUID
+     */
+    public static UUIDKey of(String name) {
+        return new UUIDKey(NBTKeyDictionary.global().intern(name));
+    }
+
+    /**
+     * @return the name the UUID is stored under
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the key of the most significant bits of the UUID
+     */
+    public NBTKey most() {
+        return most;
+    }
+
+    /**
+     * @return the key of the least significant bits of the UUID
+     */
+    public NBTKey least() {
+        return least;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof UUIDKey && name.equals(((UUIDKey) obj).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt;
+
+import java.util.Arrays;
+
+/**
+ * A String value of an immutable tag that is still in the modified UTF-8 form
+ * it was read in by the {@link NBTCodec}. Most of the strings on items (lore,
+ * book pages, sign text) are never read, in this form they take up one byte
+ * per ASCII char instead of two and are only decoded when first asked for.
+ * <br>
+ * Once decoded the String replaces the bytes. Equality, prefix and hash checks
+ * work directly on the bytes while they are still around.
+ */
+final class Utf8String {
+    //Either bytes or value is set. The value is always written before the
+    //bytes are dropped so a reader that sees null bytes will find the value.
+    private volatile byte[] bytes;
+    private volatile String value;
+
+    /**
+     * @param bytes the modified UTF-8 encoded chars, owned by the new instance
+     */
+    Utf8String(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the encoded form of the String, this array must not be modified
+     */
+    byte[] encoded() {
+        byte[] b = bytes;
+        return b != null ? b : ModifiedUTF8.encode(value);
+    }
+
+    /**
+     * @return the decoded String
+     */
+    @Override
+    public String toString() {
+        String s = value;
+        if (s == null) {
+            byte[] b = bytes;
+            if (b == null)
+                return value;
+            value = s = ModifiedUTF8.decode(b, 0, b.length);
+            bytes = null;
+        }
+        return s;
+    }
+
+    /**
+     * @param other the String to compare with
+     * @return true if this String is equal to {@code other}
+     */
+    boolean contentEquals(String other) {
+        byte[] b = bytes;
+        return b == null ? toString().equals(other) : matches(b, other, false);
+    }
+
+    /**
+     * @param prefix the String to compare with
+     * @return true if this String starts with {@code prefix}
+     */
+    boolean startsWith(String prefix) {
+        byte[] b = bytes;
+        return b == null ? toString().startsWith(prefix) : matches(b, prefix, true);
+    }
+
+    /**
+     * @return the same value as {@link Fingerprints#ofString(String)} of the decoded String
+     */
+    long fingerprint() {
+        byte[] b = bytes;
+        if (b == null)
+            return Fingerprints.ofString(toString());
+        long h = ModifiedUTF8.charCount(b, 0, b.length);
+        for (int i = 0; i < b.length; ) {
+            long next = ModifiedUTF8.next(b, i, b.length);
+            h = 31 * h + (char) next;
+            i = (int) (next >>> 16);
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Utf8String)) return false;
+        byte[] b = bytes;
+        byte[] otherBytes = ((Utf8String) obj).bytes;
+        if (b != null && otherBytes != null)
+            return Arrays.equals(b, otherBytes);
+        return b == null ? ((Utf8String) obj).contentEquals(value) : contentEquals(((Utf8String) obj).value);
+    }
+
+    /**
+     * @return the same hash as the decoded String
+     */
+    @Override
+    public int hashCode() {
+        byte[] b = bytes;
+        if (b == null)
+            return toString().hashCode();
+        int h = 0;
+        for (int i = 0; i < b.length; ) {
+            long next = ModifiedUTF8.next(b, i, b.length);
+            h = 31 * h + (char) next;
+            i = (int) (next >>> 16);
+        }
+        return h;
+    }
+
+    private static boolean matches(byte[] b, String s, boolean prefix) {
+        int i = 0;
+        int c = 0;
+        while (i < b.length && c < s.length()) {
+            long next = ModifiedUTF8.next(b, i, b.length);
+            if ((char) next != s.charAt(c++))
+                return false;
+            i = (int) (next >>> 16);
+        }
+        return c == s.length() && (prefix || i == b.length);
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates an {@code NBTSerializer}, {@code NBTInstanceDeserializer} and {@code NBTStreamSerializer} for each class marked
+ * with {@code @NBTSerializable}. The generated code reads and writes the fields directly
+ * so there is no reflection or introspection at runtime.
+ * <br>
+ * For each package with marked classes a {@code GeneratedNBTSerializers} registry is
+ * generated and listed as a service so that {@code NBTsonBuilder#registerGenerated}
+ * can find it.
+ */
+@SupportedAnnotationTypes(NBTSerializableProcessor.ANNOTATION)
+public class NBTSerializableProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "io.github.mrblobman.nbt.NBTSerializable";
+    private static final String REGISTRY_NAME = "GeneratedNBTSerializers";
+    private static final String REGISTRY_SERVICE = "META-INF/services/io.github.mrblobman.nbt.NBTSerializerRegistry";
+    private static final String[] GENERATED_IMPORTS = {
+            "NBTBaseTag", "NBTCompoundTag", "NBTDeserializationException", "NBTInstanceDeserializer",
+            "NBTKey", "NBTSerializer", "NBTStreamSerializer", "NBTStreamWriter", "SerializationContext"
+    };
+
+    //package -> fully qualified names of the generated serializers and their types
+    private final Map<String, Map<String, String>> pending = new TreeMap<>();
+    private final Set<String> registries = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        Set<? extends Element> marked = annotation == null
+                ? Collections.<Element>emptySet()
+                : roundEnv.getElementsAnnotatedWith(annotation);
+
+        for (TypeElement type : ElementFilter.typesIn(marked)) {
+            try {
+                generateSerializer(type);
+            } catch (IOException e) {
+                error(type, "Could not write the serializer for " + type + ": " + e.getMessage());
+            }
+        }
+
+        //Registries are written in the round after the serializers so that all of
+        //the serializers in a package end up in the same registry
+        if (marked.isEmpty() && !roundEnv.processingOver())
+            generateRegistries();
+        if (roundEnv.processingOver())
+            writeServiceFile();
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void generateSerializer(TypeElement type) throws IOException {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@NBTSerializable can only be used on concrete classes.");
+            return;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@NBTSerializable can only be used on static nested classes.");
+            return;
+        }
+
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                hasConstructor = true;
+        }
+        if (!hasConstructor) {
+            error(type, "@NBTSerializable classes need a non private no argument constructor.");
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        List<VariableElement> fields = collectFields(type, packageName);
+        if (fields == null)
+            return;
+
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = nestedName(type) + "NBTSerializer";
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+             PrintWriter out = new PrintWriter(writer)) {
+            if (!packageName.isEmpty())
+                out.println("package " + packageName + ";");
+            out.println();
+            for (String imported : GENERATED_IMPORTS)
+                out.println("import io.github.mrblobman.nbt." + imported + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated from {@link " + typeName + "} by the NBTProxy annotation processor.");
+            out.println(" */");
+            out.println("@SuppressWarnings(\"unchecked\")");
+            out.println("public final class " + simpleName + " implements NBTSerializer<" + typeName + ">, NBTInstanceDeserializer<" + typeName + ">, NBTStreamSerializer<" + typeName + "> {");
+            for (VariableElement field : fields)
+                out.println("    private static final NBTKey KEY_" + field.getSimpleName() + " = NBTKey.of(\"" + field.getSimpleName() + "\");");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public NBTBaseTag serialize(" + typeName + " item, SerializationContext context) {");
+            out.println("        NBTCompoundTag tag = context.factory().newCompoundTag();");
+            for (VariableElement field : fields)
+                out.println("        " + writeStatement(field));
+            out.println("        return tag;");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public void serialize(" + typeName + " item, NBTStreamWriter out, SerializationContext context) {");
+            out.println("        out.beginCompound();");
+            for (VariableElement field : fields)
+                out.println("        " + streamStatement(field));
+            out.println("        out.endCompound();");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public " + typeName + " deserialize(NBTBaseTag data, SerializationContext context) {");
+            out.println("        " + typeName + " item = new " + typeName + "();");
+            out.println("        deserializeInto(data, item, context);");
+            out.println("        return item;");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public void deserializeInto(NBTBaseTag data, " + typeName + " item, SerializationContext context) {");
+            out.println("        if (!data.type().isCompound())");
+            out.println("            throw new NBTDeserializationException(data, \"Expected a compound for a " + type.getSimpleName() + " but found a \" + data.type() + \".\");");
+            out.println("        NBTCompoundTag tag = (NBTCompoundTag) data;");
+            for (VariableElement field : fields) {
+                String name = field.getSimpleName().toString();
+                out.println("        if (tag.hasKey(KEY_" + name + "))");
+                out.println("            item." + name + " = " + readExpression(field) + ";");
+            }
+            out.println("    }");
+            out.println("}");
+        }
+
+        Map<String, String> serializers = pending.get(packageName);
+        if (serializers == null)
+            pending.put(packageName, serializers = new TreeMap<>());
+        serializers.put(qualifiedName, typeName);
+    }
+
+    /**
+     * @return the name of the type including the names of the types it is
+     * nested in, joined with underscores
+     */
+    private static String nestedName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    /**
+     * @return the serialized fields, superclass fields first, or null if
+     * an error was reported
+     */
+    private List<VariableElement> collectFields(TypeElement type, String packageName) {
+        List<VariableElement> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        boolean valid = true;
+        for (TypeElement c = type; c != null && !c.getQualifiedName().contentEquals("java.lang.Object"); c = superclass(c)) {
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(c).getQualifiedName().contentEquals(packageName);
+            List<VariableElement> declared = new ArrayList<>();
+            for (VariableElement field : ElementFilter.fieldsIn(c.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+                    continue;
+                if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.PRIVATE)
+                        || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+                    error(field, "Serialized fields of " + type.getSimpleName() + " must not be final and must be accessible from its package, mark it transient to skip it.");
+                    valid = false;
+                    continue;
+                }
+                if (!names.add(field.getSimpleName().toString())) {
+                    error(field, type.getSimpleName() + " has more than one field named " + field.getSimpleName() + ".");
+                    valid = false;
+                    continue;
+                }
+                declared.add(field);
+            }
+            fields.addAll(0, declared);
+        }
+        return valid ? fields : null;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass)
+                : null;
+    }
+
+    private String writeStatement(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String key = "KEY_" + name;
+        String value = "item." + name;
+        TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "tag.putBoolean(" + key + ", " + value + ");";
+            case BYTE:
+                return "tag.putByte(" + key + ", " + value + ");";
+            case SHORT:
+                return "tag.putShort(" + key + ", " + value + ");";
+            case CHAR:
+                return "tag.putShort(" + key + ", (short) " + value + ");";
+            case INT:
+                return "tag.putInt(" + key + ", " + value + ");";
+            case LONG:
+                return "tag.putLong(" + key + ", " + value + ");";
+            case FLOAT:
+                return "tag.putFloat(" + key + ", " + value + ");";
+            case DOUBLE:
+                return "tag.putDouble(" + key + ", " + value + ");";
+            default:
+                String erased = erasure(type);
+                String put;
+                if (erased.equals("java.lang.String"))
+                    put = "tag.putString(" + key + ", " + value + ");";
+                else if (erased.equals("byte[]"))
+                    put = "tag.putByteArray(" + key + ", " + value + ");";
+                else if (erased.equals("int[]"))
+                    put = "tag.putIntArray(" + key + ", " + value + ");";
+                else
+                    put = "tag.put(" + key + ", context.serialize(" + value + "));";
+                return "if (" + value + " != null) " + put;
+        }
+    }
+
+    private String streamStatement(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String key = "KEY_" + name;
+        String value = "item." + name;
+        TypeMirror type = field.asType();
+        if (type.getKind() == TypeKind.CHAR)
+            return "out.name(" + key + ").value((short) " + value + ");";
+        if (type.getKind().isPrimitive())
+            return "out.name(" + key + ").value(" + value + ");";
+
+        String erased = erasure(type);
+        if (erased.equals("java.lang.String") || erased.equals("byte[]") || erased.equals("int[]"))
+            return "if (" + value + " != null) out.name(" + key + ").value(" + value + ");";
+        return "if (" + value + " != null) context.serialize(" + value + ", out.name(" + key + "));";
+    }
+
+    private String readExpression(VariableElement field) {
+        String key = "KEY_" + field.getSimpleName();
+        TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "tag.getBoolean(" + key + ")";
+            case BYTE:
+                return "tag.getByte(" + key + ")";
+            case SHORT:
+                return "tag.getShort(" + key + ")";
+            case CHAR:
+                return "(char) tag.getShort(" + key + ")";
+            case INT:
+                return "tag.getInt(" + key + ")";
+            case LONG:
+                return "tag.getLong(" + key + ")";
+            case FLOAT:
+                return "tag.getFloat(" + key + ")";
+            case DOUBLE:
+                return "tag.getDouble(" + key + ")";
+            default:
+                String erased = erasure(type);
+                if (erased.equals("java.lang.String"))
+                    return "tag.getString(" + key + ")";
+                //The arrays of live tags are the nms storage, the fields get copies
+                if (erased.equals("byte[]"))
+                    return "tag.getByteArray(" + key + ").clone()";
+                if (erased.equals("int[]"))
+                    return "tag.getIntArray(" + key + ").clone()";
+                //Long array tags don't exist before 1.12, the built-in codec falls back to a list
+                if (erased.equals("long[]"))
+                    return "context.deserialize(tag.getTag(" + key + "), long[].class)";
+                return "context.deserializeInto(tag.getTag(" + key + "), item." + field.getSimpleName() + ", " + erased + ".class)";
+        }
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void generateRegistries() {
+        for (Map.Entry<String, Map<String, String>> entry : pending.entrySet()) {
+            String packageName = entry.getKey();
+            String qualifiedName = packageName.isEmpty() ? REGISTRY_NAME : packageName + "." + REGISTRY_NAME;
+            try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName).openWriter();
+                 PrintWriter out = new PrintWriter(writer)) {
+                if (!packageName.isEmpty())
+                    out.println("package " + packageName + ";");
+                out.println();
+                out.println("import io.github.mrblobman.nbt.NBTSerializerRegistry;");
+                out.println("import io.github.mrblobman.nbt.NBTson;");
+                out.println();
+                out.println("/**");
+                out.println(" * Generated by the NBTProxy annotation processor.");
+                out.println(" */");
+                out.println("public final class " + REGISTRY_NAME + " implements NBTSerializerRegistry {");
+                out.println();
+                out.println("    @Override");
+                out.println("    public void registerAll(NBTson.NBTsonBuilder builder) {");
+                for (Map.Entry<String, String> serializer : entry.getValue().entrySet())
+                    out.println("        builder.register(" + serializer.getValue() + ".class, new " + serializer.getKey() + "());");
+                out.println("    }");
+                out.println("}");
+                registries.add(qualifiedName);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + qualifiedName + ": " + e.getMessage());
+            }
+        }
+        pending.clear();
+    }
+
+    private void writeServiceFile() {
+        if (registries.isEmpty())
+            return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY_SERVICE);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                for (String registry : registries)
+                    out.println(registry);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + REGISTRY_SERVICE + ": " + e.getMessage());
+        }
+    }
+}
@@ -23,11 +23,9 @@
  */
 package io.github.mrblobman.nbt.v1_10_R1;
 
-import io.github.mrblobman.nbt.NBTBaseTag;
-import io.github.mrblobman.nbt.NBTType;
 import net.minecraft.server.v1_10_R1.NBTTagByteArray;
 
-public class NBTByteArrayTag extends NBTBaseTag<byte[]> {
+public class NBTByteArrayTag extends io.github.mrblobman.nbt.NBTByteArrayTag {
     private NBTTagByteArray nmsTag;
 
     public NBTByteArrayTag(byte[] value) {
@@ -40,11 +38,6 @@ public class NBTByteArrayTag extends NBTBaseTag<byte[]> {
         this.nmsTag = (NBTTagByteArray) super.getHandle();
     }
 
-    @Override
-    public NBTType<byte[]> type() {
-        return NBTType.BYTE_ARRAY;
-    }
-
     @Override
     public byte[] get() {
         return nmsTag.c();
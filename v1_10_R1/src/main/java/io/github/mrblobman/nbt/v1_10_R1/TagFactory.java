@@ -24,6 +24,7 @@
 package io.github.mrblobman.nbt.v1_10_R1;
 
 import io.github.mrblobman.nbt.NBTBaseTag;
+import io.github.mrblobman.nbt.NBTCodec;
 import io.github.mrblobman.nbt.NBTCompoundTag;
 import io.github.mrblobman.nbt.NBTException;
 import io.github.mrblobman.nbt.NBTIODelegate;
@@ -162,8 +163,8 @@ public class TagFactory extends io.github.mrblobman.nbt.TagFactory {
                 throw new NBTException("Error opening file input stream for " + item.getName() + ".", e);
             }
 
-            try {
-                NBTTagCompound nmsTag = NBTCompressedStreamTools.a(inputStream);
+            try (DataInputStream dataInput = new DataInputStream(NBTCodec.inflating(inputStream))) {
+                NBTTagCompound nmsTag = NBTCompressedStreamTools.a(dataInput);
                 return new io.github.mrblobman.nbt.v1_10_R1.NBTCompoundTag(nmsTag);
             } catch (IOException e) {
                 throw new NBTException("Error reading from file " + item.getName() + ".", e);
@@ -179,8 +180,8 @@ public class TagFactory extends io.github.mrblobman.nbt.TagFactory {
                 throw new NBTException("Error opening file output stream for " + item.getName() + ".", e);
             }
 
-            try {
-                NBTCompressedStreamTools.a((NBTTagCompound) tag.getHandle(), outputStream);
+            try (DataOutputStream dataOutput = new DataOutputStream(NBTCodec.deflating(outputStream))) {
+                NBTCompressedStreamTools.a((NBTTagCompound) tag.getHandle(), (DataOutput) dataOutput);
             } catch (IOException e) {
                 throw new NBTException("Error writing to file " + item.getName() + ".", e);
             }
@@ -223,6 +224,11 @@ public class TagFactory extends io.github.mrblobman.nbt.TagFactory {
         }
     }
 
+    @Override
+    protected Object cloneHandle(Object handle) {
+        return ((NBTBase) handle).clone();
+    }
+
     @Override
     public NBTBaseTag<Byte> newByteTag(byte value) {
         return new NBTByteTag(value);
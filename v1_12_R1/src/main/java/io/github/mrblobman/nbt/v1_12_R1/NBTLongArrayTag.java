@@ -0,0 +1,63 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 MrBlobman
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.github.mrblobman.nbt.v1_12_R1;
+
+import io.github.mrblobman.nbt.NBTException;
+import net.minecraft.server.v1_12_R1.NBTTagLongArray;
+
+import java.lang.reflect.Field;
+
+public class NBTLongArrayTag extends io.github.mrblobman.nbt.NBTLongArrayTag {
+    //NBTTagLongArray doesn't expose its data in 1.12 so it is read from the field
+    private static final Field DATA_FIELD;
+    static {
+        try {
+            DATA_FIELD = NBTTagLongArray.class.getDeclaredField("b");
+            DATA_FIELD.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private NBTTagLongArray nmsTag;
+
+    public NBTLongArrayTag(long[] value) {
+        super(new NBTTagLongArray(value));
+        this.nmsTag = (NBTTagLongArray) super.getHandle();
+    }
+
+    public NBTLongArrayTag(NBTTagLongArray nmsTag) {
+        super(nmsTag);
+        this.nmsTag = (NBTTagLongArray) super.getHandle();
+    }
+
+    @Override
+    public long[] get() {
+        try {
+            return (long[]) DATA_FIELD.get(nmsTag);
+        } catch (IllegalAccessException e) {
+            throw new NBTException("Cannot access the data of a long array tag.", e);
+        }
+    }
+}
@@ -44,19 +44,21 @@ public class NBTCompoundTag extends io.github.mrblobman.nbt.NBTCompoundTag {
 
     @Override
     public void put(String key, NBTBaseTag value) {
-        this.nmsTag.set(key, (NBTBase) value.getHandle());
+        this.nmsTag.set(NBTKeyDictionary.global().intern(key), (NBTBase) value.getHandle());
+        invalidateFingerprint();
     }
 
     @Override
     public void putAll(io.github.mrblobman.nbt.NBTCompoundTag tag) {
         this.nmsTag.a((NBTTagCompound) tag.getHandle());
+        invalidateFingerprint();
     }
 
     @Override
     public  <T> T get(String key, NBTType<T> type) {
         NBTBase nbtBase = nmsTag.get(key);
         try {
-            NBTBaseTag<T> tag = nbtBase == null ? type.newTag() : type.wrapHandle(nbtBase);
+            NBTBaseTag<T> tag = nbtBase == null ? type.newTag() : child(type.wrapHandle(nbtBase));
             return tag.get();
         } catch (ClassCastException e) {
             return null;
@@ -66,12 +68,13 @@ public class NBTCompoundTag extends io.github.mrblobman.nbt.NBTCompoundTag {
     @Override
     public NBTBaseTag getTag(String key) {
         NBTBase nbtBase = nmsTag.get(key);
-        return nbtBase == null ? null : NBTType.getType(nbtBase.getTypeId()).wrapHandle(nbtBase);
+        return nbtBase == null ? null : child(NBTType.getType(nbtBase.getTypeId()).wrapHandle(nbtBase));
     }
 
     @Override
     public void remove(String key) {
         this.nmsTag.remove(key);
+        invalidateFingerprint();
     }
 
     @Override
@@ -96,7 +99,8 @@ public class NBTCompoundTag extends io.github.mrblobman.nbt.NBTCompoundTag {
 
     @Override
     public void putBoolean(String key, boolean value) {
-        nmsTag.setBoolean(key, value);
+        nmsTag.setBoolean(NBTKeyDictionary.global().intern(key), value);
+        invalidateFingerprint();
     }
 
     @Override
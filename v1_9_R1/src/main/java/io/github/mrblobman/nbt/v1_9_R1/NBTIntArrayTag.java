@@ -23,11 +23,9 @@
  */
 package io.github.mrblobman.nbt.v1_9_R1;
 
-import io.github.mrblobman.nbt.NBTBaseTag;
-import io.github.mrblobman.nbt.NBTType;
 import net.minecraft.server.v1_9_R1.NBTTagIntArray;
 
-public class NBTIntArrayTag extends NBTBaseTag<int[]> {
+public class NBTIntArrayTag extends io.github.mrblobman.nbt.NBTIntArrayTag {
     private NBTTagIntArray nmsTag;
 
     public NBTIntArrayTag(int[] value) {
@@ -40,11 +38,6 @@ public class NBTIntArrayTag extends NBTBaseTag<int[]> {
         this.nmsTag = (NBTTagIntArray) super.getHandle();
     }
 
-    @Override
-    public NBTType<int[]> type() {
-        return NBTType.INT_ARRAY;
-    }
-
     @Override
     public int[] get() {
         return nmsTag.c();
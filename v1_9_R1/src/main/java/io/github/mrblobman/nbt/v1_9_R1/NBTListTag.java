@@ -26,6 +26,8 @@ package io.github.mrblobman.nbt.v1_9_R1;
 import io.github.mrblobman.nbt.NBTBaseTag;
 import io.github.mrblobman.nbt.NBTType;
 import net.minecraft.server.v1_9_R1.NBTBase;
+import net.minecraft.server.v1_9_R1.NBTTagDouble;
+import net.minecraft.server.v1_9_R1.NBTTagInt;
 import net.minecraft.server.v1_9_R1.NBTTagList;
 
 public class NBTListTag extends io.github.mrblobman.nbt.NBTListTag {
@@ -51,16 +53,19 @@ public class NBTListTag extends io.github.mrblobman.nbt.NBTListTag {
     @Override
     protected void addInternal(NBTBaseTag tag) {
         nmsTag.add((NBTBase) tag.getHandle());
+        invalidateFingerprint();
     }
 
     @Override
     protected void setInternal(int pos, NBTBaseTag tag) {
         nmsTag.a(pos, (NBTBase) tag.getHandle());
+        invalidateFingerprint();
     }
 
     @Override
     public NBTBaseTag remove(int pos) {
         NBTBase obj = nmsTag.remove(pos);
+        invalidateFingerprint();
         return NBTType.getType(obj.getTypeId()).wrapHandle(obj);
     }
 
@@ -73,7 +78,41 @@ public class NBTListTag extends io.github.mrblobman.nbt.NBTListTag {
     public NBTBaseTag get(int pos) {
         if (pos >= size()) return null;
         NBTBase obj = nmsTag.h(pos);
-        return NBTType.getType(obj.getTypeId()).wrapHandle(obj);
+        return child(NBTType.getType(obj.getTypeId()).wrapHandle(obj));
+    }
+
+    @Override
+    protected double getDoubleInternal(int pos) {
+        return ((NBTTagDouble) nmsTag.h(pos)).g();
+    }
+
+    @Override
+    protected void setDoubleInternal(int pos, double value) {
+        nmsTag.a(pos, new NBTTagDouble(value));
+        invalidateFingerprint();
+    }
+
+    @Override
+    protected void addDoubleInternal(double value) {
+        nmsTag.add(new NBTTagDouble(value));
+        invalidateFingerprint();
+    }
+
+    @Override
+    protected int getIntInternal(int pos) {
+        return ((NBTTagInt) nmsTag.h(pos)).d();
+    }
+
+    @Override
+    protected void setIntInternal(int pos, int value) {
+        nmsTag.a(pos, new NBTTagInt(value));
+        invalidateFingerprint();
+    }
+
+    @Override
+    protected void addIntInternal(int value) {
+        nmsTag.add(new NBTTagInt(value));
+        invalidateFingerprint();
     }
 
     @Override